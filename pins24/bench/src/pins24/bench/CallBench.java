@@ -0,0 +1,63 @@
+package pins24.bench;
+
+import java.util.concurrent.*;
+import org.openjdk.jmh.annotations.*;
+import pins24.phase.*;
+
+/**
+ * Hitrost skladovnega stroja pri programih s pogostimi klici funkcij.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CallBench {
+
+	/** Ali se podprogrami prevedejo v bajtno kodo JVM. */
+	@Param({ "false", "true" })
+	public boolean compileCode;
+
+	/** Ali se pogosto izvajani podprogrami prevedejo med izvajanjem. */
+	@Param({ "false", "true" })
+	public boolean tieredCompilation;
+
+	/** Rekurzivni izracun Fibonaccijevega stevila. */
+	private Machine.Executor fib;
+
+	/** Klici gnezdenih funkcij. */
+	private Machine.Executor nestedCalls;
+
+	/**
+	 * Prevede programe in jih nalozi; meri se le izvajanje.
+	 */
+	@Setup(Level.Trial)
+	public void setup() {
+		Machine.compileCode = compileCode;
+		Machine.tieredCompilation = tieredCompilation;
+		fib = Programs.compile(Programs.tempFile(Programs.fib(25)));
+		nestedCalls = Programs.compile(Programs.tempFile(Programs.nestedCalls(50000)));
+	}
+
+	/**
+	 * Rekurzivni izracun Fibonaccijevega stevila.
+	 * 
+	 * @return Izhodna koda programa.
+	 */
+	@Benchmark
+	public int fib() {
+		return Programs.run(fib);
+	}
+
+	/**
+	 * Klici gnezdenih funkcij.
+	 * 
+	 * @return Izhodna koda programa.
+	 */
+	@Benchmark
+	public int nestedCalls() {
+		return Programs.run(nestedCalls);
+	}
+
+}
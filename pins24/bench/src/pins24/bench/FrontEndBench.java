@@ -0,0 +1,130 @@
+package pins24.bench;
+
+import java.util.concurrent.*;
+import org.openjdk.jmh.annotations.*;
+import pins24.common.*;
+import pins24.phase.*;
+
+/**
+ * Hitrost posameznih faz prevajalnika na velikem sinteticnem programu.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FrontEndBench {
+
+	/** Stevilo funkcij v programu. */
+	@Param({ "100", "1000" })
+	public int numFuns;
+
+	/** Ime izvorne datoteke. */
+	private String srcFileName;
+
+	/** Rezultat abstraktne sintakse. */
+	private Abstr.AttrAST abstrAttrAST;
+
+	/** Rezultat semanticne analize. */
+	private SemAn.AttrAST semanAttrAST;
+
+	/** Rezultat pomnilniske predstavitve. */
+	private Memory.AttrAST memoryAttrAST;
+
+	/** Rezultat generiranja kode. */
+	private CodeGen.AttrAST codegenAttrAST;
+
+	/**
+	 * Pripravi program in rezultate faz, ki so vhod v merjene faze.
+	 */
+	@Setup(Level.Trial)
+	public void setup() {
+		srcFileName = Programs.tempFile(Programs.large(numFuns));
+		try (SynAn synAn = new SynAn(srcFileName)) {
+			abstrAttrAST = Abstr.constructAST(synAn);
+		}
+		semanAttrAST = SemAn.analyze(abstrAttrAST);
+		memoryAttrAST = Memory.organize(semanAttrAST);
+		codegenAttrAST = CodeGen.generate(memoryAttrAST);
+	}
+
+	/**
+	 * Leksikalna analiza.
+	 * 
+	 * @return Stevilo leksikalnih simbolov.
+	 */
+	@Benchmark
+	public int lexAn() {
+		int numTokens = 0;
+		try (LexAn lexAn = new LexAn(srcFileName)) {
+			while (lexAn.takeToken().symbol() != Token.Symbol.EOF)
+				numTokens++;
+		}
+		return numTokens;
+	}
+
+	/**
+	 * Sintaksna analiza z gradnjo abstraktnega sintaksnega drevesa.
+	 * 
+	 * @return Abstraktno sintaksno drevo.
+	 */
+	@Benchmark
+	public Abstr.AttrAST synAn() {
+		try (SynAn synAn = new SynAn(srcFileName)) {
+			return Abstr.constructAST(synAn);
+		}
+	}
+
+	/**
+	 * Semanticna analiza.
+	 * 
+	 * @return Abstraktno sintaksno drevo z atributi semanticne analize.
+	 */
+	@Benchmark
+	public SemAn.AttrAST semAn() {
+		return SemAn.analyze(abstrAttrAST);
+	}
+
+	/**
+	 * Optimizacija abstraktnega sintaksnega drevesa.
+	 * 
+	 * @return Optimizirano abstraktno sintaksno drevo z atributi semanticne
+	 *         analize.
+	 */
+	@Benchmark
+	public SemAn.AttrAST astOpt() {
+		return ASTOpt.optimize(semanAttrAST);
+	}
+
+	/**
+	 * Pomnilniska predstavitev.
+	 * 
+	 * @return Abstraktno sintaksno drevo z atributi pomnilniske predstavitve.
+	 */
+	@Benchmark
+	public Memory.AttrAST memory() {
+		return Memory.organize(semanAttrAST);
+	}
+
+	/**
+	 * Generiranje kode.
+	 * 
+	 * @return Abstraktno sintaksno drevo z atributi generiranja kode.
+	 */
+	@Benchmark
+	public CodeGen.AttrAST codeGen() {
+		return CodeGen.generate(memoryAttrAST);
+	}
+
+	/**
+	 * Optimizacija kode.
+	 * 
+	 * @return Optimiziran seznam ukazov.
+	 */
+	@Benchmark
+	public Object codeOpt() {
+		return CodeOpt.optimize((new CodeGen.CodeSegmentGenerator(codegenAttrAST)).codeSegment());
+	}
+
+}
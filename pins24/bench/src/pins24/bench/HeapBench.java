@@ -0,0 +1,48 @@
+package pins24.bench;
+
+import java.util.concurrent.*;
+import org.openjdk.jmh.annotations.*;
+import pins24.phase.*;
+
+/**
+ * Hitrost skladovnega stroja pri programih, ki pogosto zasedajo in sproscajo
+ * pomnilnik na kopici.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HeapBench {
+
+	/** Stevilo zgrajenih seznamov. */
+	@Param({ "20" })
+	public int rounds;
+
+	/** Dolzina posameznega seznama. */
+	@Param({ "200" })
+	public int length;
+
+	/** Gradnja, sprehajanje in sproscanje povezanih seznamov. */
+	private Machine.Executor lists;
+
+	/**
+	 * Prevede program in ga nalozi; meri se le izvajanje.
+	 */
+	@Setup(Level.Trial)
+	public void setup() {
+		lists = Programs.compile(Programs.tempFile(Programs.lists(rounds, length)));
+	}
+
+	/**
+	 * Gradnja, sprehajanje in sproscanje povezanih seznamov.
+	 * 
+	 * @return Izhodna koda programa.
+	 */
+	@Benchmark
+	public int lists() {
+		return Programs.run(lists);
+	}
+
+}
@@ -0,0 +1,78 @@
+package pins24.bench;
+
+import java.util.concurrent.*;
+import org.openjdk.jmh.annotations.*;
+import pins24.phase.*;
+
+/**
+ * Hitrost skladovnega stroja na programu {@code test.pins24} (quicksort) in na
+ * sinteticnih zankah.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MachineBench {
+
+	/** Ali se podprogrami prevedejo v bajtno kodo JVM. */
+	@Param({ "false", "true" })
+	public boolean compileCode;
+
+	/** Ali se pogosto izvajani podprogrami prevedejo med izvajanjem. */
+	@Param({ "false", "true" })
+	public boolean tieredCompilation;
+
+	/** Program {@code test.pins24}. */
+	private Machine.Executor quicksort;
+
+	/** Program s preprosto zanko. */
+	private Machine.Executor loop;
+
+	/** Program z gnezdenimi zankami. */
+	private Machine.Executor nestedLoops;
+
+	/**
+	 * Prevede programe in jih nalozi; meri se le izvajanje.
+	 */
+	@Setup(Level.Trial)
+	public void setup() {
+		Machine.compileCode = compileCode;
+		Machine.tieredCompilation = tieredCompilation;
+		quicksort = Programs.compile(Programs.file("test.pins24"));
+		loop = Programs.compile(Programs.tempFile(Programs.loop(1000000)));
+		nestedLoops = Programs.compile(Programs.tempFile(Programs.nestedLoops(300)));
+	}
+
+	/**
+	 * Quicksort.
+	 * 
+	 * @return Izhodna koda programa.
+	 */
+	@Benchmark
+	public int quicksort() {
+		return Programs.run(quicksort);
+	}
+
+	/**
+	 * Preprosta zanka.
+	 * 
+	 * @return Izhodna koda programa.
+	 */
+	@Benchmark
+	public int loop() {
+		return Programs.run(loop);
+	}
+
+	/**
+	 * Gnezdeni zanki z dostopi do tabele.
+	 * 
+	 * @return Izhodna koda programa.
+	 */
+	@Benchmark
+	public int nestedLoops() {
+		return Programs.run(nestedLoops);
+	}
+
+}
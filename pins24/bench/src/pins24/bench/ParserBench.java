@@ -0,0 +1,62 @@
+package pins24.bench;
+
+import java.util.concurrent.*;
+import org.openjdk.jmh.annotations.*;
+import pins24.phase.*;
+
+/**
+ * Hitrost sintaksne analize programov z zelo dolgimi seznami definicij in
+ * stavkov.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParserBench {
+
+	/** Stevilo definicij oziroma stavkov v programu. */
+	@Param({ "100000" })
+	public int size;
+
+	/** Ime izvorne datoteke s programom z veliko definicijami. */
+	private String manyDefinitions;
+
+	/** Ime izvorne datoteke s programom z veliko stavki. */
+	private String manyStatements;
+
+	/**
+	 * Pripravi programa.
+	 */
+	@Setup(Level.Trial)
+	public void setup() {
+		manyDefinitions = Programs.tempFile(Programs.manyDefinitions(size));
+		manyStatements = Programs.tempFile(Programs.manyStatements(size));
+	}
+
+	/**
+	 * Sintaksna analiza programa z veliko definicijami.
+	 * 
+	 * @return Abstraktno sintaksno drevo.
+	 */
+	@Benchmark
+	public Abstr.AttrAST manyDefinitions() {
+		try (SynAn synAn = new SynAn(manyDefinitions)) {
+			return Abstr.constructAST(synAn);
+		}
+	}
+
+	/**
+	 * Sintaksna analiza programa z veliko stavki.
+	 * 
+	 * @return Abstraktno sintaksno drevo.
+	 */
+	@Benchmark
+	public Abstr.AttrAST manyStatements() {
+		try (SynAn synAn = new SynAn(manyStatements)) {
+			return Abstr.constructAST(synAn);
+		}
+	}
+
+}
@@ -0,0 +1,263 @@
+package pins24.bench;
+
+import java.io.*;
+import java.nio.file.*;
+import pins24.common.*;
+import pins24.phase.*;
+
+/**
+ * Programi, na katerih se meri hitrost prevajalnika in skladovnega stroja.
+ */
+public class Programs {
+
+	@SuppressWarnings({ "doclint:missing" })
+	public Programs() {
+		throw new Report.InternalError();
+	}
+
+	/** Deklaracije 'sistemskih' funkcij. */
+	private static final String SYSTEM_FUNS = """
+			fun exit(exitcode)
+			fun getint()
+			fun putint(intvalue)
+			fun getstr(straddr)
+			fun putstr(straddr)
+			fun new(size)
+			fun del(addr)
+			""";
+
+	/**
+	 * Vrne ime datoteke s programom iz imenika s primeri programov (sistemska
+	 * lastnost {@code pins24.prg}, privzeto {@code ..}).
+	 *
+	 * @param name Ime datoteke.
+	 * @return Ime datoteke s potjo.
+	 */
+	public static String file(final String name) {
+		return Paths.get(System.getProperty("pins24.prg", ".."), name).toString();
+	}
+
+	/**
+	 * Zapise izvorno kodo v zacasno datoteko.
+	 *
+	 * @param source Izvorna koda.
+	 * @return Ime zacasne datoteke.
+	 */
+	public static String tempFile(final String source) {
+		try {
+			final Path path = Files.createTempFile("pins24-bench-", ".pins24");
+			path.toFile().deleteOnExit();
+			Files.writeString(path, source);
+			return path.toString();
+		} catch (IOException __) {
+			throw new Report.Error("Cannot write temporary source file.");
+		}
+	}
+
+	/**
+	 * Prevede program in ga nalozi v skladovni stroj.
+	 *
+	 * @param srcFileName Ime izvorne datoteke.
+	 * @return Skladovni stroj z nalozenim programom.
+	 */
+	public static Machine.Executor compile(final String srcFileName) {
+		return Runner.compile(srcFileName);
+	}
+
+	/**
+	 * Izvede nalozen program brez vhoda; izhod programa se zavrze.
+	 *
+	 * @param program Skladovni stroj z nalozenim programom.
+	 * @return Izhodna koda programa.
+	 */
+	public static int run(final Machine.Executor program) {
+		return program.run(InputStream.nullInputStream(), new PrintStream(OutputStream.nullOutputStream()));
+	}
+
+	// --- SINTETICNI PROGRAMI ---
+
+	/**
+	 * Ustvari velik program za merjenje hitrosti faz prevajalnika.
+	 *
+	 * @param numFuns Stevilo funkcij v programu.
+	 * @return Izvorna koda.
+	 */
+	public static String large(final int numFuns) {
+		final StringBuilder source = new StringBuilder();
+		source.append("var seed = 1\n");
+		source.append("var table = 64 * 0\n");
+		source.append("fun f0(a, b) = a + b\n");
+		for (int f = 1; f < numFuns; f++) {
+			source.append("fun f" + f + "(a, b) =\n");
+			source.append("\tlet\n");
+			source.append("\t\tvar x = 0 var y = " + f + " var s = \"fun" + f + "\\00\"\n");
+			source.append("\t\tfun g(c) = if c > 0 then c * 2 - y else -c end, c\n");
+			source.append("\tin\n");
+			source.append("\t\twhile x < a && y != b do\n");
+			source.append("\t\t\tif x % 3 == 0 || !(y >= 100) then y = y + f" + (f - 1) + "(x, b) * 7 / 3\n");
+			source.append("\t\t\telse y = y - g(b) + (^table + (x % 64) * 4)^ end,\n");
+			source.append("\t\t\tx = x + 1, seed = seed * 1664525 + 1013904223\n");
+			source.append("\t\tend,\n");
+			source.append("\t\ty\n");
+			source.append("\tend\n");
+		}
+		source.append("fun main() = f1(10, 20), 0\n");
+		source.append(SYSTEM_FUNS);
+		return source.toString();
+	}
+
+	/**
+	 * Ustvari program z zelo veliko definicijami na najvisjem nivoju.
+	 *
+	 * @param numDefs Stevilo definicij v programu.
+	 * @return Izvorna koda.
+	 */
+	public static String manyDefinitions(final int numDefs) {
+		final StringBuilder source = new StringBuilder();
+		for (int d = 0; d < numDefs; d++)
+			source.append(d % 2 == 0 ? "var v" + d + " = " + d + "\n" : "fun f" + d + "(a, b, c) = g(a, b, c, v" + (d - 1) + ")\n");
+		source.append("fun g(a, b, c, d) = a\n");
+		source.append("fun main() = 0\n");
+		source.append(SYSTEM_FUNS);
+		return source.toString();
+	}
+
+	/**
+	 * Ustvari program s funkcijo z zelo dolgim zaporedjem stavkov.
+	 *
+	 * @param numStmts Stevilo stavkov v funkciji.
+	 * @return Izvorna koda.
+	 */
+	public static String manyStatements(final int numStmts) {
+		final StringBuilder source = new StringBuilder();
+		source.append("var x = 0\n");
+		source.append("fun main() =\n");
+		for (int s = 0; s < numStmts; s++)
+			source.append("\tx = x + " + s + ",\n");
+		source.append("\t0\n");
+		source.append(SYSTEM_FUNS);
+		return source.toString();
+	}
+
+	/**
+	 * Program s preprosto zanko.
+	 *
+	 * @param n Stevilo ponovitev zanke.
+	 * @return Izvorna koda.
+	 */
+	public static String loop(final int n) {
+		return """
+				fun main() =
+					let var i = 0 var s = 0 in
+					while i < %d do s = s + i * 3 %% 7, i = i + 1 end,
+					putint(s),
+					0
+					end
+				""".formatted(n) + SYSTEM_FUNS;
+	}
+
+	/**
+	 * Program z gnezdenimi zankami in dostopi do tabele.
+	 *
+	 * @param n Velikost tabele.
+	 * @return Izvorna koda.
+	 */
+	public static String nestedLoops(final int n) {
+		return """
+				var arr = %d * 0
+				fun main() =
+					let var i = 0 var j = 0 var s = 0 in
+					while i < %d do
+						j = 0,
+						while j < %d do (^arr + j * 4)^ = (^arr + j * 4)^ + i, j = j + 1 end,
+						i = i + 1
+					end,
+					i = 0, while i < %d do s = s + (^arr + i * 4)^, i = i + 1 end,
+					putint(s),
+					0
+					end
+				""".formatted(n, n, n, n) + SYSTEM_FUNS;
+	}
+
+	/**
+	 * Program z rekurzivnimi klici.
+	 *
+	 * @param n Argument funkcije {@code fib}.
+	 * @return Izvorna koda.
+	 */
+	public static String fib(final int n) {
+		return """
+				fun fib(n) =
+					let var r = 0 in
+					if n < 2 then r = n else r = fib(n - 1) + fib(n - 2) end,
+					r
+					end
+				fun main() = putint(fib(%d)), 0
+				""".formatted(n) + SYSTEM_FUNS;
+	}
+
+	/**
+	 * Program z gnezdenimi funkcijami, ki dostopajo do spremenljivk zunanjih
+	 * funkcij prek staticne povezave.
+	 *
+	 * @param n Stevilo klicev.
+	 * @return Izvorna koda.
+	 */
+	public static String nestedCalls(final int n) {
+		return """
+				fun outer(n) =
+					let
+						var count = 0
+						var r = 0
+						fun inner(k) =
+							let var r = 0 fun leaf(m) = count = count + m, m in
+							if k > 0 then r = leaf(k) + inner(k - 1) end,
+							r
+							end
+					in
+						while n > 0 do r = inner(5), n = n - 1 end,
+						count
+					end
+				fun main() = putint(outer(%d)), 0
+				""".formatted(n) + SYSTEM_FUNS;
+	}
+
+	/**
+	 * Program, ki gradi in sprehaja povezane sezname na kopici.
+	 *
+	 * @param rounds Stevilo zgrajenih seznamov.
+	 * @param length Dolzina posameznega seznama.
+	 * @return Izvorna koda.
+	 */
+	public static String lists(final int rounds, final int length) {
+		return """
+				fun cons(head, tail) =
+					let var cell = 0 in
+					cell = new(8), cell^ = head, (cell + 4)^ = tail,
+					cell
+					end
+				fun sum(list) =
+					let var s = 0 in
+					while list != 0 do s = s + list^, list = (list + 4)^ end,
+					s
+					end
+				fun free(list) =
+					let var next = 0 in
+					while list != 0 do next = (list + 4)^, del(list), list = next end,
+					0
+					end
+				fun main() =
+					let var r = 0 var i = 0 var list = 0 var s = 0 in
+					while r < %d do
+						list = 0, i = 0,
+						while i < %d do list = cons(i, list), i = i + 1 end,
+						s = s + sum(list) + free(list),
+						r = r + 1
+					end,
+					putint(s),
+					0
+					end
+				""".formatted(rounds, length) + SYSTEM_FUNS;
+	}
+
+}
@@ -0,0 +1,55 @@
+package pins24.bench;
+
+import java.util.concurrent.*;
+import org.openjdk.jmh.annotations.*;
+import pins24.common.*;
+import pins24.phase.*;
+
+/**
+ * Hitrost leksikalne analize velikih izvornih datotek pri branju izvorne
+ * datoteke z razlagalnikom znakov in pri preslikavi izvorne datoteke v
+ * pomnilnik.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SourceBench {
+
+	/** Ali se izvorna datoteka preslika v pomnilnik. */
+	@Param({ "false", "true" })
+	public boolean mapSource;
+
+	/** Stevilo funkcij v programu (priblizno 0.5 MB na 1000 funkcij). */
+	@Param({ "10000", "100000" })
+	public int numFuns;
+
+	/** Ime izvorne datoteke. */
+	private String srcFileName;
+
+	/**
+	 * Pripravi program.
+	 */
+	@Setup(Level.Trial)
+	public void setup() {
+		srcFileName = Programs.tempFile(Programs.large(numFuns));
+	}
+
+	/**
+	 * Leksikalna analiza.
+	 * 
+	 * @return Stevilo leksikalnih simbolov.
+	 */
+	@Benchmark
+	public int lexAn() {
+		int numTokens = 0;
+		try (LexAn lexAn = new LexAn(srcFileName, mapSource)) {
+			while (lexAn.takeToken().symbol() != Token.Symbol.EOF)
+				numTokens++;
+		}
+		return numTokens;
+	}
+
+}
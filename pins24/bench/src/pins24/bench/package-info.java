@@ -0,0 +1,4 @@
+/**
+ * Merjenje hitrosti prevajalnika in skladovnega stroja (JMH).
+ */
+package pins24.bench;
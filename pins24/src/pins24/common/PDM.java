@@ -42,7 +42,7 @@ public class PDM {
 	public static abstract class INSTR implements Instruction {
 
 		/** Lokacija dela izvorne kode, ki se prevede v ta ukaz. */
-		public final Report.Location debugLocation;
+		public final Report.Locatable debugLocation;
 
 		/**
 		 * Ustvari nov ukaz skladovnega stroja.
@@ -50,7 +50,7 @@ public class PDM {
 		 * @param debugLocation Lokacija dela izvorne kode, ki se prevede v ta ukaz.
 		 */
 		public INSTR(final Report.Locatable debugLocation) {
-			this.debugLocation = debugLocation == null ? null : debugLocation.location();
+			this.debugLocation = debugLocation;
 		}
 
 		@Override
@@ -491,4 +491,127 @@ public class PDM {
 
 	}
 
+	/**
+	 * Klic podprograma v repnem polozaju (angl. tail call), pri katerem klicani
+	 * podprogram prevzame klicni zapis klicatelja.
+	 * 
+	 * Argumenti in staticna povezava klicanega podprograma se premaknejo na mesto
+	 * parametrov in staticne povezave klicatelja, nad njimi pa se ponovno zapiseta
+	 * {@code FP} in povratni naslov klicatelja, tako da se klicani podprogram
+	 * vrne neposredno tja, kamor bi se vrnil klicatelj.
+	 */
+	public static class TCAL extends INSTR implements CodeInstr {
+
+		/** Velikost argumentov in staticne povezave klicanega podprograma. */
+		public final Integer argsSize;
+
+		/** Velikost parametrov in staticne povezave klicatelja. */
+		public final Integer parsSize;
+
+		/** Klicni zapis klicanega podprograma. */
+		public final Mem.Frame debugFrame;
+
+		/**
+		 * Ustvari nov ukaz {@link TCAL}.
+		 * 
+		 * @param argsSize      Velikost argumentov in staticne povezave klicanega
+		 *                      podprograma.
+		 * @param parsSize      Velikost parametrov in staticne povezave klicatelja.
+		 * @param debugFrame    Klicni zapis klicanega podprograma.
+		 * @param debugLocation Lokacija dela izvorne kode, ki se prevede v ta ukaz.
+		 */
+		public TCAL(final Integer argsSize, final Integer parsSize, final Mem.Frame debugFrame,
+				final Report.Locatable debugLocation) {
+			super(debugLocation);
+			this.argsSize = argsSize;
+			this.parsSize = parsSize;
+			this.debugFrame = debugFrame;
+		}
+
+		@Override
+		public Integer size() {
+			return super.size() + 8;
+		}
+
+		@Override
+		public String toString() {
+			return "TCAL " + argsSize + ":" + parsSize;
+		}
+
+	}
+
+	/**
+	 * Prenos vrednosti spremenljivke ali parametra iz klicnega zapisa na sklad
+	 * (nadomesca zaporedje {@code REGN.FP; LOAD...; PUSH offset; OPER.ADD; LOAD}).
+	 */
+	public static class LOADFP extends INSTR implements CodeInstr {
+
+		/** Stevilo sledenj staticni povezavi od klicnega zapisa, na katerega kaze FP. */
+		public final Integer hops;
+
+		/** Odmik od zacetka klicnega zapisa. */
+		public final Integer offset;
+
+		/**
+		 * Ustvari nok ukaz {@link LOADFP}.
+		 * 
+		 * @param hops          Stevilo sledenj staticni povezavi.
+		 * @param offset        Odmik od zacetka klicnega zapisa.
+		 * @param debugLocation Lokacija dela izvorne kode, ki se prevede v ta ukaz.
+		 */
+		public LOADFP(final Integer hops, final Integer offset, final Report.Locatable debugLocation) {
+			super(debugLocation);
+			this.hops = hops;
+			this.offset = offset;
+		}
+
+		@Override
+		public Integer size() {
+			return super.size() + (hops == 0 ? 4 : 8);
+		}
+
+		@Override
+		public String toString() {
+			return "LOADFP " + (hops == 0 ? "" : hops + ":") + offset;
+		}
+
+	}
+
+	/**
+	 * Prenos vrednosti s sklada v spremenljivko ali parameter v klicnem zapisu
+	 * (nadomesca zaporedje {@code REGN.FP; LOAD...; PUSH offset; OPER.ADD; SAVE}).
+	 */
+	public static class SAVEFP extends INSTR implements CodeInstr {
+
+		/** Stevilo sledenj staticni povezavi od klicnega zapisa, na katerega kaze FP. */
+		public final Integer hops;
+
+		/** Odmik od zacetka klicnega zapisa. */
+		public final Integer offset;
+
+		/**
+		 * Ustvari nok ukaz {@link SAVEFP}.
+		 * 
+		 * @param hops          Stevilo sledenj staticni povezavi.
+		 * @param offset        Odmik od zacetka klicnega zapisa.
+		 * @param debugLocation Lokacija dela izvorne kode, ki se prevede v ta ukaz.
+		 */
+		public SAVEFP(final Integer hops, final Integer offset, final Report.Locatable debugLocation) {
+			super(debugLocation);
+			this.hops = hops;
+			this.offset = offset;
+		}
+
+		@Override
+		public Integer size() {
+			return super.size() + (hops == 0 ? 4 : 8);
+		}
+
+		@Override
+		public String toString() {
+			return "SAVEFP " + (hops == 0 ? "" : hops + ":") + offset;
+		}
+
+	}
+
 }
\ No newline at end of file
@@ -52,6 +52,152 @@ public class Report {
 
 	}
 
+	/**
+	 * Lokacija v izvorni datoteki, ki se razteza od ene do druge lokacije.
+	 * 
+	 * Za razliko od {@link Location#Location(Locatable, Locatable)} se lokacija ne
+	 * izracuna ob nastanku, temvec sele, ko jo kdo zahteva (ob napaki, opozorilu
+	 * ali izpisu).
+	 * 
+	 * @param beg Prva lokacija.
+	 * @param end Druga lokacija.
+	 */
+	public record Span(Locatable beg, Locatable end) implements Locatable {
+
+		/**
+		 * Ustvari novo lokacijo, ki se razteza od ene do druge lokacije.
+		 * 
+		 * Ce je katera od lokacij ze sama razpon, se uporabi ustrezno krajisce
+		 * razpona, zato razponi niso gnezdeni.
+		 * 
+		 * @param beg Prva lokacija.
+		 * @param end Druga lokacija.
+		 */
+		public Span {
+			if (beg instanceof Span span)
+				beg = span.beg;
+			if (end instanceof Span span)
+				end = span.end;
+		}
+
+		@Override
+		public Location location() {
+			return new Location(beg, end);
+		}
+
+		@Override
+		public String toString() {
+			return location().toString();
+		}
+
+	}
+
+	/**
+	 * Tabela vrstic izvorne datoteke.
+	 * 
+	 * Tabela hrani odmike (od zacetka izvorne datoteke) tistih znakov, pri katerih
+	 * se stolpec ne poveca za ena glede na prejsnji znak (zacetki vrstic in znaki za
+	 * tabulatorji), skupaj z vrstico in stolpcem teh znakov. Vrstica in stolpec
+	 * vseh ostalih znakov se izracunata iz odmika, zato leksikalni simboli namesto
+	 * lokacije hranijo le odmike (glej {@link Token}).
+	 */
+	public static class Lines {
+
+		/** Odmiki znakov v tabeli (narascajoce urejeni). */
+		private int[] offsets = new int[1 << 10];
+
+		/** Vrstice znakov v tabeli. */
+		private int[] lines = new int[1 << 10];
+
+		/** Stolpci znakov v tabeli. */
+		private int[] columns = new int[1 << 10];
+
+		/** Stevilo znakov v tabeli. */
+		private int size = 0;
+
+		/**
+		 * Ustvari novo prazno tabelo vrstic.
+		 */
+		public Lines() {
+		}
+
+		/**
+		 * Doda znak v tabelo.
+		 * 
+		 * @param offset Odmik znaka (vecji od odmikov vseh znakov v tabeli).
+		 * @param line   Vrstica znaka.
+		 * @param column Stolpec znaka.
+		 */
+		public void add(final int offset, final int line, final int column) {
+			if (size == offsets.length) {
+				offsets = java.util.Arrays.copyOf(offsets, 2 * size);
+				lines = java.util.Arrays.copyOf(lines, 2 * size);
+				columns = java.util.Arrays.copyOf(columns, 2 * size);
+			}
+			offsets[size] = offset;
+			lines[size] = line;
+			columns[size] = column;
+			size++;
+		}
+
+		/**
+		 * Vrne indeks zadnjega znaka v tabeli, ki ni za danim odmikom.
+		 * 
+		 * @param offset Odmik.
+		 * @return Indeks znaka v tabeli.
+		 */
+		private int find(final int offset) {
+			if (offsets[size - 1] <= offset)
+				return size - 1;
+			int lo = 0;
+			int hi = size - 1;
+			while (lo < hi) {
+				final int mid = (lo + hi + 1) >>> 1;
+				if (offsets[mid] <= offset)
+					lo = mid;
+				else
+					hi = mid - 1;
+			}
+			return lo;
+		}
+
+		/**
+		 * Vrne vrstico znaka.
+		 * 
+		 * @param offset Odmik znaka.
+		 * @return Vrstica znaka.
+		 */
+		public int line(final int offset) {
+			return lines[find(offset)];
+		}
+
+		/**
+		 * Vrne stolpec znaka.
+		 * 
+		 * @param offset Odmik znaka.
+		 * @return Stolpec znaka.
+		 */
+		public int column(final int offset) {
+			final int index = find(offset);
+			return columns[index] + (offset - offsets[index]);
+		}
+
+		/**
+		 * Vrne lokacijo dela vrstice, ki se konca z danim znakom.
+		 * 
+		 * @param endOffset Odmik zadnjega znaka.
+		 * @param length    Dolzina dela vrstice.
+		 * @return Lokacija.
+		 */
+		public Location location(final int endOffset, final int length) {
+			final int index = find(endOffset);
+			final int line = lines[index];
+			final int column = columns[index] + (endOffset - offsets[index]);
+			return new Location(line, column - length + 1, line, column);
+		}
+
+	}
+
 	/**
 	 * Vmesnik, ki naj ga implementirajo razredi, katerih objekti predstavljajo dele
 	 * izvorne datoteke.
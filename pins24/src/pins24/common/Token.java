@@ -3,11 +3,23 @@ package pins24.common;
 /**
  * Leksikalni simbol.
  * 
- * @param location Lokacija simbola v izvornem programu.
- * @param symbol   Vrsta simbola.
- * @param lexeme   Znakovna predstavitev simbola.
+ * Lokacija simbola v izvornem programu se ne hrani, temvec se izracuna iz
+ * odmika zadnjega znaka in dolzine simbola, ko jo kdo zahteva (glej
+ * {@link Report.Lines}).
+ * 
+ * @param lines     Tabela vrstic izvornega programa.
+ * @param endOffset Odmik zadnjega znaka simbola od zacetka izvornega programa.
+ * @param length    Dolzina simbola v stolpcih.
+ * @param symbol    Vrsta simbola.
+ * @param lexeme    Znakovna predstavitev simbola.
  */
-public record Token(Report.Location location, Symbol symbol, String lexeme) implements Report.Locatable {
+public record Token(Report.Lines lines, int endOffset, int length, Symbol symbol, String lexeme)
+		implements Report.Locatable {
+
+	@Override
+	public Report.Location location() {
+		return lines.location(endOffset, length);
+	}
 
 	/**
 	 * Vrste leksikalnih simbolov.
@@ -93,7 +105,7 @@ public record Token(Report.Location location, Symbol symbol, String lexeme) impl
 		case IDENTIFIER -> "(" + this.lexeme + ")";
 		default -> "";
 		};
-		return location + " " + symbol + lexeme;
+		return location() + " " + symbol + lexeme;
 	}
 
 }
\ No newline at end of file
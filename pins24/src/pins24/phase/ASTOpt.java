@@ -0,0 +1,971 @@
+package pins24.phase;
+
+import java.util.*;
+import pins24.common.*;
+
+/**
+ * Optimizacija abstraktnega sintaksnega drevesa.
+ *
+ * Optimizacija se opravi po semanticni analizi in pred izracunom pomnilniske
+ * predstavitve:
+ * <ol>
+ * <li>izracun konstantnih enomestnih in dvomestnih izrazov (deljenje z 0 se
+ * izvede sele med izvajanjem);</li>
+ * <li>algebrske poenostavitve {@code x+0}, {@code 0+x}, {@code x-0},
+ * {@code x*1}, {@code 1*x}, {@code x/1}, {@code +x}, {@code -(-x)} in
+ * zdruzevanje zaporednih pristevanj konstant;</li>
+ * <li>poenostavitve {@code x*0}, {@code 0*x}, {@code x%1}, {@code x&&0},
+ * {@code 0&&x}, {@code x||c} in {@code c||x} ({@code c!=0}), kadar izracun
+ * {@code x} nima stranskih ucinkov (ne vsebuje klicev, dostopov do pomnilnika
+ * prek kazalcev in deljenj, ki bi se lahko koncala z napako);</li>
+ * <li>pogojni stavek s konstantnim pogojem se nadomesti s stavki ustrezne
+ * veje, pogojni stavek s pogojem {@code !x} pa se nadomesti s pogojnim
+ * stavkom s pogojem {@code x} in zamenjanima vejama;</li>
+ * <li>zanka s pogojem, ki je vedno neresnicen, se odstrani;</li>
+ * <li>klic majhne funkcije brez klicev in lokalnih definicij se nadomesti s
+ * telesom funkcije, v katerem so parametri nadomesceni z argumenti (funkcija,
+ * katere telo je en sam izraz, se vstavi v kateri koli izraz, funkcija, katere
+ * telo so prireditve, ki jim sledi izraz, pa le v klic, ki je stavek ali izvor
+ * prireditve);</li>
+ * <li>funkcije, ki niso dosegljive iz funkcije {@code main} po grafu klicev,
+ * in staticne spremenljivke, ki jih dosegljive funkcije ne uporabljajo, se
+ * odstranijo (skupaj z njimi tudi nizi v telesih odstranjenih funkcij).</li>
+ * </ol>
+ *
+ * Vozlisca, ki se ne spremenijo, se ohranijo, namesto spremenjenih pa se
+ * ustvarijo nova. Nova vozlisca dobijo lokacijo vozlisc, ki jih nadomescajo,
+ * atributa {@link SemAn.AttrAST#attrDef} in {@link SemAn.AttrAST#attrLVal} pa
+ * se prenesejo na nova vozlisca.
+ */
+public class ASTOpt {
+
+	@SuppressWarnings({ "doclint:missing" })
+	public ASTOpt() {
+		throw new Report.InternalError();
+	}
+
+	/**
+	 * Optimizira abstraktno sintaksno drevo.
+	 *
+	 * @param semanAttrAST Abstraktno sintaksno drevo z dodanimi atributi
+	 *                     semanticne analize.
+	 * @return Optimizirano abstraktno sintaksno drevo z dodanimi atributi
+	 *         semanticne analize.
+	 */
+	public static SemAn.AttrAST optimize(final SemAn.AttrAST semanAttrAST) {
+		return (new Optimizer(semanAttrAST)).optimize(new ArrayList<AST.Def>());
+	}
+
+	/**
+	 * Optimizira abstraktno sintaksno drevo.
+	 *
+	 * @param semanAttrAST Abstraktno sintaksno drevo z dodanimi atributi
+	 *                     semanticne analize.
+	 * @param removedDefs  Seznam, v katerega se dodajo odstranjene definicije
+	 *                     funkcij in spremenljivk.
+	 * @return Optimizirano abstraktno sintaksno drevo z dodanimi atributi
+	 *         semanticne analize.
+	 */
+	public static SemAn.AttrAST optimize(final SemAn.AttrAST semanAttrAST, final List<AST.Def> removedDefs) {
+		return (new Optimizer(semanAttrAST)).optimize(removedDefs);
+	}
+
+	/**
+	 * Izpise odstranjene definicije funkcij in spremenljivk.
+	 *
+	 * @param attrAST     Abstraktno sintaksno drevo z dodanimi atributi
+	 *                    abstraktne sintakse (pred optimizacijo).
+	 * @param removedDefs Odstranjene definicije funkcij in spremenljivk.
+	 */
+	public static void report(final Abstr.AttrAST attrAST, final List<AST.Def> removedDefs) {
+		for (final AST.Def def : removedDefs)
+			Report.info(attrAST.attrLoc.get(def), "Removed unused "
+					+ (def instanceof AST.FunDef ? "function" : "variable") + " '" + def.name + "'.");
+	}
+
+	/**
+	 * Optimizacija abstraktnega sintaksnega drevesa.
+	 */
+	private static class Optimizer {
+
+		/** Abstraktno sintaksno drevo z dodanimi atributi semanticne analize. */
+		private final SemAn.AttrAST attrAST;
+
+		/** Lokacije vozlisc optimiziranega drevesa. */
+		private final HashMap<AST.Node, Report.Locatable> attrLoc;
+
+		/** Preslikava nadomescenih vozlisc v vozlisca, ki jih nadomescajo. */
+		private final HashMap<AST.Node, AST.Node> replacements = new HashMap<AST.Node, AST.Node>();
+
+		/**
+		 * Definicije funkcij in spremenljivk, ki se lahko odstranijo, ce niso
+		 * dosegljive (funkcije s telesom in staticne spremenljivke).
+		 */
+		private final HashSet<AST.Def> removableDefs = new HashSet<AST.Def>();
+
+		/**
+		 * Dosegljive definicije funkcij in spremenljivk ali {@code null}, ce se
+		 * definicije ne odstranjujejo.
+		 */
+		private HashSet<AST.Def> reachableDefs = null;
+
+		/** Odstranjene definicije funkcij in spremenljivk. */
+		private List<AST.Def> removedDefs;
+
+		/** Najvecje stevilo izrazov in stavkov v telesu vstavljene funkcije. */
+		private static final int MAX_INLINE_SIZE = 24;
+
+		/**
+		 * Funkcije, ki so ze bile pregledane, in podatki za njihovo vstavljanje
+		 * ({@code null}, ce se funkcija ne more vstaviti).
+		 */
+		private final HashMap<AST.FunDef, Inline> inlines = new HashMap<AST.FunDef, Inline>();
+
+		/** Atribut {@link SemAn.AttrAST#attrDef} vozlisc vstavljenih teles funkcij. */
+		private final HashMap<AST.NameExpr, AST.Def> inlinedDefs = new HashMap<AST.NameExpr, AST.Def>();
+
+		/**
+		 * Atribut {@link SemAn.AttrAST#attrLVal} vozlisc vstavljenih teles funkcij.
+		 */
+		private final HashMap<AST.Expr, Boolean> inlinedLVals = new HashMap<AST.Expr, Boolean>();
+
+		/**
+		 * Ustvari novo optimizacijo abstraktnega sintaksnega drevesa.
+		 *
+		 * @param attrAST Abstraktno sintaksno drevo z dodanimi atributi semanticne
+		 *                analize.
+		 */
+		public Optimizer(final SemAn.AttrAST attrAST) {
+			this.attrAST = attrAST;
+			this.attrLoc = new HashMap<AST.Node, Report.Locatable>(attrAST.attrLoc);
+		}
+
+		/**
+		 * Sprozi optimizacijo abstraktnega sintaksnega drevesa.
+		 *
+		 * @param removedDefs Seznam, v katerega se dodajo odstranjene definicije
+		 *                    funkcij in spremenljivk.
+		 * @return Optimizirano abstraktno sintaksno drevo z dodanimi atributi
+		 *         semanticne analize.
+		 */
+		public SemAn.AttrAST optimize(final List<AST.Def> removedDefs) {
+			this.removedDefs = removedDefs;
+			AST.Node ast = attrAST.ast.accept(new OptimizerVisitor(), null);
+			HashMap<AST.NameExpr, AST.Def> attrDef = attrDef();
+			// odstranitev nedosegljivih definicij (po izracunu konstantnih pogojev, saj
+			// klici v odstranjenih vejah ne dosezejo funkcij):
+			reachableDefs = reachableDefs(ast, attrDef);
+			if (reachableDefs != null && !reachableDefs.containsAll(removableDefs)) {
+				ast = ast.accept(new OptimizerVisitor(), null);
+				attrDef = attrDef();
+			}
+			if (ast == attrAST.ast)
+				return attrAST;
+			final HashMap<AST.Expr, Boolean> attrLVal = new HashMap<AST.Expr, Boolean>();
+			for (final Map.Entry<AST.Expr, Boolean> entry : attrAST.attrLVal.entrySet())
+				attrLVal.put((AST.Expr) replacement(entry.getKey()), entry.getValue());
+			for (final Map.Entry<AST.Expr, Boolean> entry : inlinedLVals.entrySet())
+				attrLVal.put((AST.Expr) replacement(entry.getKey()), entry.getValue());
+			return new SemAn.AttrAST(
+					new Abstr.AttrAST(new AST.AttrAST(ast), Collections.unmodifiableMap(attrLoc)),
+					Collections.unmodifiableMap(attrDef), Collections.unmodifiableMap(attrLVal));
+		}
+
+		/**
+		 * Vrne vozlisce, ki nadomesca dano vozlisce.
+		 *
+		 * @param node Vozlisce prvotnega drevesa.
+		 * @return Vozlisce optimiziranega drevesa (ali dano vozlisce, ce ni bilo
+		 *         nadomesceno).
+		 */
+		private AST.Node replacement(final AST.Node node) {
+			AST.Node newNode = node;
+			while (replacements.containsKey(newNode))
+				newNode = replacements.get(newNode);
+			return newNode;
+		}
+
+		/**
+		 * Prenese atribut {@link SemAn.AttrAST#attrDef} na vozlisca optimiziranega
+		 * drevesa.
+		 *
+		 * @return Definicije uporabljenih imen v optimiziranem drevesu.
+		 */
+		private HashMap<AST.NameExpr, AST.Def> attrDef() {
+			final HashMap<AST.NameExpr, AST.Def> attrDef = new HashMap<AST.NameExpr, AST.Def>();
+			for (final Map.Entry<AST.NameExpr, AST.Def> entry : attrAST.attrDef.entrySet())
+				attrDef.put((AST.NameExpr) replacement(entry.getKey()), (AST.Def) replacement(entry.getValue()));
+			for (final Map.Entry<AST.NameExpr, AST.Def> entry : inlinedDefs.entrySet())
+				attrDef.put((AST.NameExpr) replacement(entry.getKey()), (AST.Def) replacement(entry.getValue()));
+			return attrDef;
+		}
+
+		/**
+		 * Izracuna definicije funkcij in spremenljivk, ki so dosegljive iz funkcije
+		 * {@code main}, in definicije, ki se lahko odstranijo.
+		 *
+		 * @param ast     Abstraktno sintaksno drevo.
+		 * @param attrDef Definicije uporabljenih imen.
+		 * @return Dosegljive definicije ali {@code null}, ce funkcije {@code main} ni.
+		 */
+		private HashSet<AST.Def> reachableDefs(final AST.Node ast, final Map<AST.NameExpr, AST.Def> attrDef) {
+			AST.FunDef main = null;
+			for (final AST.Node node : (AST.Nodes<?>) ast) {
+				switch (node) {
+				case final AST.FunDef funDef:
+					if (funDef.name.equals("main") && funDef.stmts.size() != 0)
+						main = funDef;
+					break;
+				case final AST.VarDef varDef:
+					removableDefs.add(varDef);
+					break;
+				default:
+					break;
+				}
+			}
+			if (main == null)
+				return null;
+
+			final HashSet<AST.Def> reachableDefs = new HashSet<AST.Def>();
+			final LinkedList<AST.FunDef> funDefs = new LinkedList<AST.FunDef>();
+			reachableDefs.add(main);
+			funDefs.add(main);
+			final AST.FullVisitor<Object, Object> visitor = new AST.FullVisitor<Object, Object>() {
+
+				@Override
+				public Object visit(final AST.FunDef funDef, final Object arg) {
+					// gnezdena funkcija je dosegljiva le, ce je klicana
+					if (funDef.stmts.size() != 0)
+						removableDefs.add(funDef);
+					return null;
+				}
+
+				@Override
+				public Object visit(final AST.VarExpr varExpr, final Object arg) {
+					reachableDefs.add(attrDef.get(varExpr));
+					return null;
+				}
+
+				@Override
+				public Object visit(final AST.CallExpr callExpr, final Object arg) {
+					if (attrDef.get(callExpr) instanceof AST.FunDef funDef && reachableDefs.add(funDef))
+						funDefs.add(funDef);
+					callExpr.args.accept(this, arg);
+					return null;
+				}
+
+			};
+			for (final AST.Node node : (AST.Nodes<?>) ast)
+				node.accept(visitor, null);
+			while (!funDefs.isEmpty())
+				funDefs.removeFirst().stmts.accept(visitor, null);
+			return reachableDefs;
+		}
+
+		/**
+		 * Zabelezi, da novo vozlisce nadomesca staro vozlisce.
+		 *
+		 * @param <ANode> Tip novega vozlisca.
+		 * @param oldNode Staro vozlisce.
+		 * @param newNode Novo vozlisce.
+		 * @return Novo vozlisce.
+		 */
+		private <ANode extends AST.Node> ANode replace(final AST.Node oldNode, final ANode newNode) {
+			if (newNode == oldNode)
+				return newNode;
+			final Report.Locatable loc = attrLoc.get(oldNode);
+			if (loc != null)
+				attrLoc.putIfAbsent(newNode, loc);
+			replacements.put(oldNode, newNode);
+			return newNode;
+		}
+
+		/**
+		 * Ustvari celostevilsko konstanto.
+		 *
+		 * @param oldNode Vozlisce, ki ga konstanta nadomesca.
+		 * @param value   Vrednost konstante.
+		 * @return Celostevilska konstanta.
+		 */
+		private AST.AtomExpr intConst(final AST.Node oldNode, final int value) {
+			return replace(oldNode, new AST.AtomExpr(AST.AtomExpr.Type.INTCONST, Integer.toString(value)));
+		}
+
+		/**
+		 * Vrne vrednost konstantnega izraza.
+		 *
+		 * @param expr Izraz.
+		 * @return Vrednost izraza ali {@code null}, ce izraz ni celostevilska ali
+		 *         znakovna konstanta.
+		 */
+		private static Integer value(final AST.Expr expr) {
+			if (!(expr instanceof AST.AtomExpr atomExpr))
+				return null;
+			try {
+				return switch (atomExpr.type) {
+				case INTCONST -> Integer.parseInt(atomExpr.value);
+				case CHRCONST -> Memory.decodeChrConst(atomExpr, null);
+				default -> null;
+				};
+			} catch (NumberFormatException | IndexOutOfBoundsException __) {
+				return null;
+			}
+		}
+
+		/**
+		 * Ugotovi, ali se izracun izraza lahko izpusti.
+		 *
+		 * @param expr Izraz.
+		 * @return Ali izracun izraza nima stranskih ucinkov in se ne more koncati z
+		 *         napako.
+		 */
+		private static boolean isPure(final AST.Expr expr) {
+			return switch (expr) {
+			case AST.AtomExpr atomExpr -> true;
+			case AST.VarExpr varExpr -> true;
+			case AST.UnExpr unExpr -> unExpr.oper != AST.UnExpr.Oper.VALUEAT && isPure(unExpr.expr);
+			case AST.BinExpr binExpr -> switch (binExpr.oper) {
+			case DIV, MOD -> {
+				final Integer snd = value(binExpr.sndExpr);
+				yield snd != null && snd != 0 && isPure(binExpr.fstExpr);
+			}
+			default -> isPure(binExpr.fstExpr) && isPure(binExpr.sndExpr);
+			};
+			default -> false;
+			};
+		}
+
+		/**
+		 * Izracuna vrednost dvomestnega izraza nad konstantama.
+		 *
+		 * @param oper Operator.
+		 * @param fst  Vrednost prvega operanda.
+		 * @param snd  Vrednost drugega operanda.
+		 * @return Vrednost izraza.
+		 */
+		private static int oper(final AST.BinExpr.Oper oper, final int fst, final int snd) {
+			return switch (oper) {
+			case OR -> (fst != 0) || (snd != 0) ? 1 : 0;
+			case AND -> (fst != 0) && (snd != 0) ? 1 : 0;
+			case EQU -> fst == snd ? 1 : 0;
+			case NEQ -> fst != snd ? 1 : 0;
+			case GTH -> fst > snd ? 1 : 0;
+			case LTH -> fst < snd ? 1 : 0;
+			case GEQ -> fst >= snd ? 1 : 0;
+			case LEQ -> fst <= snd ? 1 : 0;
+			case ADD -> fst + snd;
+			case SUB -> fst - snd;
+			case MUL -> fst * snd;
+			case DIV -> fst / snd;
+			case MOD -> fst % snd;
+			};
+		}
+
+		/**
+		 * Vrne definicijo imena v prvotnem drevesu ali v vstavljenem telesu
+		 * funkcije.
+		 *
+		 * @param nameExpr Ime.
+		 * @return Definicija imena ali {@code null}, ce ime ni del prvotnega drevesa
+		 *         ali vstavljenega telesa funkcije.
+		 */
+		private AST.Def def(final AST.NameExpr nameExpr) {
+			final AST.Def def = inlinedDefs.get(nameExpr);
+			return def != null ? def : attrAST.attrDef.get(nameExpr);
+		}
+
+		/**
+		 * Podatki za vstavljanje funkcije na mesto klica.
+		 *
+		 * @param funDef   Definicija funkcije (v prvotnem drevesu).
+		 * @param uses     Stevilo uporab posameznih parametrov.
+		 * @param assigned Spremenljivke, ki se jim v telesu funkcije priredi
+		 *                 vrednost.
+		 * @param stores   Ali telo funkcije vsebuje prireditev prek kazalca.
+		 */
+		private record Inline(AST.FunDef funDef, HashMap<AST.ParDef, Integer> uses, HashSet<AST.Def> assigned,
+				boolean stores) {
+
+			/**
+			 * Ugotovi, ali je telo funkcije en sam izraz.
+			 *
+			 * @return Ali je telo funkcije en sam izraz.
+			 */
+			boolean isExpr() {
+				return funDef.stmts.size() == 1;
+			}
+
+		}
+
+		/**
+		 * Ugotovi, ali se funkcija lahko vstavi na mesto klica.
+		 *
+		 * Funkcija se lahko vstavi, ce je njeno telo zaporedje prireditev, ki mu
+		 * sledi izraz, ce ne vsebuje klicev (in zato tudi ni rekurzivna), ce se
+		 * parametrom ne prireja vrednost in se ne jemlje njihov naslov in ce telo ni
+		 * vecje od {@link #MAX_INLINE_SIZE}.
+		 *
+		 * @param funDef Definicija funkcije (v prvotnem drevesu).
+		 * @return Podatki za vstavljanje funkcije ali {@code null}, ce se funkcija ne
+		 *         more vstaviti.
+		 */
+		private Inline inline(final AST.FunDef funDef) {
+			if (inlines.containsKey(funDef))
+				return inlines.get(funDef);
+			Inline inline = null;
+			final int numStmts = funDef.stmts.size();
+			if (numStmts != 0 && funDef.stmts.get(numStmts - 1) instanceof AST.ExprStmt) {
+				final HashMap<AST.ParDef, Integer> uses = new HashMap<AST.ParDef, Integer>();
+				for (final AST.ParDef parDef : funDef.pars)
+					uses.put(parDef, 0);
+				final HashSet<AST.Def> assigned = new HashSet<AST.Def>();
+				final boolean[] stores = { false };
+				final boolean[] inlinable = { true };
+				final int[] size = { 0 };
+				final AST.FullVisitor<Object, Object> visitor = new AST.FullVisitor<Object, Object>() {
+
+					@Override
+					public Object visit(final AST.AssignStmt assignStmt, final Object arg) {
+						size[0]++;
+						if (assignStmt.dstExpr instanceof AST.VarExpr varExpr) {
+							final AST.Def def = attrAST.attrDef.get(varExpr);
+							inlinable[0] &= !uses.containsKey(def);
+							assigned.add(def);
+						} else
+							stores[0] = true;
+						return AST.FullVisitor.super.visit(assignStmt, arg);
+					}
+
+					@Override
+					public Object visit(final AST.ExprStmt exprStmt, final Object arg) {
+						size[0]++;
+						return AST.FullVisitor.super.visit(exprStmt, arg);
+					}
+
+					@Override
+					public Object visit(final AST.AtomExpr atomExpr, final Object arg) {
+						size[0]++;
+						return null;
+					}
+
+					@Override
+					public Object visit(final AST.VarExpr varExpr, final Object arg) {
+						size[0]++;
+						if (attrAST.attrDef.get(varExpr) instanceof AST.ParDef parDef && uses.containsKey(parDef))
+							uses.put(parDef, uses.get(parDef) + 1);
+						return null;
+					}
+
+					@Override
+					public Object visit(final AST.UnExpr unExpr, final Object arg) {
+						size[0]++;
+						if (unExpr.oper == AST.UnExpr.Oper.MEMADDR && unExpr.expr instanceof AST.VarExpr varExpr)
+							inlinable[0] &= !uses.containsKey(attrAST.attrDef.get(varExpr));
+						return AST.FullVisitor.super.visit(unExpr, arg);
+					}
+
+					@Override
+					public Object visit(final AST.BinExpr binExpr, final Object arg) {
+						size[0]++;
+						return AST.FullVisitor.super.visit(binExpr, arg);
+					}
+
+					@Override
+					public Object visit(final AST.CallExpr callExpr, final Object arg) {
+						inlinable[0] = false;
+						return null;
+					}
+
+				};
+				for (int s = 0; s < numStmts; s++) {
+					final AST.Node stmt = funDef.stmts.get(s);
+					if (!(stmt instanceof AST.AssignStmt || stmt instanceof AST.ExprStmt && s == numStmts - 1)) {
+						inlinable[0] = false;
+						break;
+					}
+					stmt.accept(visitor, null);
+				}
+				if (inlinable[0] && size[0] <= MAX_INLINE_SIZE)
+					inline = new Inline(funDef, uses, assigned, stores[0]);
+			}
+			inlines.put(funDef, inline);
+			return inline;
+		}
+
+		/**
+		 * Ugotovi, ali se parametri vstavljene funkcije lahko nadomestijo z
+		 * argumenti klica.
+		 *
+		 * Argumenti se izracunajo na mestu uporabe parametra (lahko tudi veckrat ali
+		 * nikoli), zato morajo biti brez stranskih ucinkov. Argument, ki ni
+		 * konstanta ali spremenljivka, se lahko uporabi najvec enkrat. Ce telo
+		 * funkcije vsebuje prireditve, so argumenti lahko le konstante in
+		 * spremenljivke, ki jih telo ne spreminja.
+		 *
+		 * @param inline Podatki za vstavljanje funkcije.
+		 * @param args   Argumenti klica.
+		 * @return Ali se parametri lahko nadomestijo z argumenti.
+		 */
+		private boolean canBind(final Inline inline, final AST.Nodes<AST.Expr> args) {
+			if (args.size() != inline.funDef.pars.size())
+				return false;
+			for (int a = 0; a < args.size(); a++) {
+				final AST.Expr arg = (AST.Expr) args.get(a);
+				final boolean isConst = value(arg) != null;
+				final boolean isVar = arg instanceof AST.VarExpr;
+				if (inline.isExpr()) {
+					if (!isPure(arg) || !(isConst || isVar || inline.uses.get((AST.ParDef) inline.funDef.pars.get(a)) <= 1))
+						return false;
+				} else {
+					if (!(isConst || isVar && !inline.stores && !inline.assigned.contains(def((AST.VarExpr) arg))))
+						return false;
+				}
+			}
+			return true;
+		}
+
+		/**
+		 * Obiskovalec, ki ustvari kopijo telesa vstavljene funkcije, v kateri so
+		 * parametri nadomesceni s kopijami argumentov.
+		 *
+		 * Kopije vozlisc dobijo lokacije in atributa {@link SemAn.AttrAST#attrDef}
+		 * in {@link SemAn.AttrAST#attrLVal} kopiranih vozlisc.
+		 */
+		private class InlineVisitor implements AST.Visitor<AST.Node, Object> {
+
+			/** Argumenti, s katerimi se nadomestijo parametri. */
+			private final HashMap<AST.Def, AST.Expr> args = new HashMap<AST.Def, AST.Expr>();
+
+			/**
+			 * Ustvari nov obiskovalec za kopiranje telesa vstavljene funkcije.
+			 *
+			 * @param funDef Definicija funkcije.
+			 * @param args   Argumenti klica.
+			 */
+			public InlineVisitor(final AST.FunDef funDef, final AST.Nodes<AST.Expr> args) {
+				for (int a = 0; a < args.size(); a++)
+					this.args.put((AST.Def) funDef.pars.get(a), (AST.Expr) args.get(a));
+			}
+
+			/**
+			 * Ustvari nov obiskovalec za kopiranje argumenta.
+			 */
+			private InlineVisitor() {
+			}
+
+			/**
+			 * Zabelezi lokacijo in atribut {@link SemAn.AttrAST#attrLVal} kopije
+			 * vozlisca.
+			 *
+			 * @param <ANode> Tip kopije.
+			 * @param node    Kopirano vozlisce.
+			 * @param copy    Kopija vozlisca.
+			 * @return Kopija vozlisca.
+			 */
+			private <ANode extends AST.Node> ANode copy(final AST.Node node, final ANode copy) {
+				final Report.Locatable loc = attrLoc.get(node);
+				if (loc != null)
+					attrLoc.put(copy, loc);
+				if (node instanceof AST.Expr expr && (attrAST.attrLVal.containsKey(expr) || inlinedLVals.containsKey(expr)))
+					inlinedLVals.put((AST.Expr) copy, true);
+				return copy;
+			}
+
+			@Override
+			public AST.Node visit(final AST.Nodes<? extends AST.Node> nodes, final Object arg) {
+				final List<AST.Node> copies = new ArrayList<AST.Node>();
+				for (final AST.Node node : nodes)
+					copies.add(node.accept(this, arg));
+				return new AST.Nodes<AST.Node>(copies);
+			}
+
+			@Override
+			public AST.Node visit(final AST.ExprStmt exprStmt, final Object arg) {
+				return copy(exprStmt, new AST.ExprStmt((AST.Expr) exprStmt.expr.accept(this, arg)));
+			}
+
+			@Override
+			public AST.Node visit(final AST.AssignStmt assignStmt, final Object arg) {
+				return copy(assignStmt, new AST.AssignStmt((AST.Expr) assignStmt.dstExpr.accept(this, arg),
+						(AST.Expr) assignStmt.srcExpr.accept(this, arg)));
+			}
+
+			@Override
+			public AST.Node visit(final AST.AtomExpr atomExpr, final Object arg) {
+				return copy(atomExpr, new AST.AtomExpr(atomExpr.type, atomExpr.value));
+			}
+
+			@Override
+			public AST.Node visit(final AST.VarExpr varExpr, final Object arg) {
+				final AST.Def def = def(varExpr);
+				final AST.Expr boundArg = args.get(def);
+				if (boundArg != null)
+					return boundArg.accept(new InlineVisitor(), arg);
+				final AST.VarExpr copy = copy(varExpr, new AST.VarExpr(varExpr.name));
+				inlinedDefs.put(copy, def);
+				return copy;
+			}
+
+			@Override
+			public AST.Node visit(final AST.UnExpr unExpr, final Object arg) {
+				return copy(unExpr, new AST.UnExpr(unExpr.oper, (AST.Expr) unExpr.expr.accept(this, arg)));
+			}
+
+			@Override
+			public AST.Node visit(final AST.BinExpr binExpr, final Object arg) {
+				return copy(binExpr, new AST.BinExpr(binExpr.oper, (AST.Expr) binExpr.fstExpr.accept(this, arg),
+						(AST.Expr) binExpr.sndExpr.accept(this, arg)));
+			}
+
+		}
+
+		/**
+		 * Obiskovalec, ki optimizira abstraktno sintaksno drevo.
+		 *
+		 * Vsaka metoda vrne optimizirano vozlisce, ki je lahko kar obiskano vozlisce.
+		 * Stavek se lahko nadomesti tudi z zaporedjem stavkov, ki se vstavi v
+		 * zaporedje, v katerem je bil stavek.
+		 */
+		private class OptimizerVisitor implements AST.Visitor<AST.Node, Object> {
+
+			@SuppressWarnings({ "doclint:missing" })
+			public OptimizerVisitor() {
+			}
+
+			/**
+			 * Optimizira zaporedje vozlisc.
+			 *
+			 * @param <ANode> Tip vozlisc.
+			 * @param nodes   Zaporedje vozlisc.
+			 * @return Optimizirano zaporedje vozlisc.
+			 */
+			@SuppressWarnings("unchecked")
+			private <ANode extends AST.Node> AST.Nodes<ANode> nodes(final AST.Nodes<ANode> nodes) {
+				return (AST.Nodes<ANode>) nodes.accept(this, null);
+			}
+
+			/**
+			 * Vstavi telo funkcije, ki ni en sam izraz, na mesto klica, ki je stavek
+			 * ali izvor prireditve.
+			 *
+			 * @param expr Izraz stavka ali izvor prireditve.
+			 * @return Kopija telesa funkcije ali {@code null}, ce izraz ni klic
+			 *         funkcije, ki se lahko vstavi.
+			 */
+			private List<AST.Stmt> inlineStmts(final AST.Expr expr) {
+				if (reachableDefs != null || !(expr instanceof AST.CallExpr callExpr)
+						|| !(def(callExpr) instanceof AST.FunDef funDef))
+					return null;
+				final Inline inline = inline(funDef);
+				if (inline == null || inline.isExpr())
+					return null;
+				final AST.Nodes<AST.Expr> args = nodes(callExpr.args);
+				if (!canBind(inline, args))
+					return null;
+				final List<AST.Stmt> stmts = new ArrayList<AST.Stmt>();
+				for (final AST.Stmt stmt : funDef.stmts)
+					stmts.add((AST.Stmt) stmt.accept(new InlineVisitor(funDef, args), null));
+				return stmts;
+			}
+
+			@Override
+			@SuppressWarnings("unchecked")
+			public AST.Node visit(final AST.Nodes<? extends AST.Node> nodes, final Object arg) {
+				final List<AST.Node> optNodes = new ArrayList<AST.Node>();
+				boolean changed = false;
+				for (final AST.Node node : nodes) {
+					if (reachableDefs != null && removableDefs.contains(node) && !reachableDefs.contains(node)) {
+						removedDefs.add((AST.Def) node);
+						changed = true;
+						continue;
+					}
+					final AST.Node optNode = node.accept(this, arg);
+					if (optNode instanceof AST.Nodes<?> spliced) {
+						for (final AST.Node splicedNode : spliced)
+							optNodes.add(splicedNode);
+						changed = true;
+					} else {
+						optNodes.add(optNode);
+						changed |= optNode != node;
+					}
+				}
+				if (!changed)
+					return nodes;
+				return replace(nodes, new AST.Nodes<AST.Node>(optNodes));
+			}
+
+			@Override
+			public AST.Node visit(final AST.FunDef funDef, final Object arg) {
+				final AST.Nodes<AST.Stmt> stmts = nodes(funDef.stmts);
+				if (stmts == funDef.stmts)
+					return funDef;
+				return replace(funDef, new AST.FunDef(funDef.name, funDef.pars.getAll(), stmts.getAll()));
+			}
+
+			@Override
+			public AST.Node visit(final AST.ParDef parDef, final Object arg) {
+				return parDef;
+			}
+
+			@Override
+			public AST.Node visit(final AST.VarDef varDef, final Object arg) {
+				return varDef;
+			}
+
+			@Override
+			public AST.Node visit(final AST.Init init, final Object arg) {
+				return init;
+			}
+
+			@Override
+			public AST.Node visit(final AST.ExprStmt exprStmt, final Object arg) {
+				final List<AST.Stmt> inlined = inlineStmts(exprStmt.expr);
+				if (inlined != null)
+					return new AST.Nodes<AST.Stmt>(inlined).accept(this, arg);
+				final AST.Expr expr = (AST.Expr) exprStmt.expr.accept(this, arg);
+				if (expr == exprStmt.expr)
+					return exprStmt;
+				return replace(exprStmt, new AST.ExprStmt(expr));
+			}
+
+			@Override
+			public AST.Node visit(final AST.AssignStmt assignStmt, final Object arg) {
+				final List<AST.Stmt> inlined = inlineStmts(assignStmt.srcExpr);
+				if (inlined != null) {
+					// vrednost zadnjega izraza vstavljenega telesa se priredi ciljni spremenljivki
+					final AST.ExprStmt result = (AST.ExprStmt) inlined.removeLast();
+					inlined.add(replace(assignStmt, new AST.AssignStmt(assignStmt.dstExpr, result.expr)));
+					return new AST.Nodes<AST.Stmt>(inlined).accept(this, arg);
+				}
+				final AST.Expr dstExpr = (AST.Expr) assignStmt.dstExpr.accept(this, arg);
+				final AST.Expr srcExpr = (AST.Expr) assignStmt.srcExpr.accept(this, arg);
+				if (dstExpr == assignStmt.dstExpr && srcExpr == assignStmt.srcExpr)
+					return assignStmt;
+				return replace(assignStmt, new AST.AssignStmt(dstExpr, srcExpr));
+			}
+
+			@Override
+			public AST.Node visit(final AST.IfStmt ifStmt, final Object arg) {
+				AST.Expr cond = (AST.Expr) ifStmt.cond.accept(this, arg);
+				AST.Nodes<AST.Stmt> thenStmts = nodes(ifStmt.thenStmts);
+				AST.Nodes<AST.Stmt> elseStmts = nodes(ifStmt.elseStmts);
+				final Integer value = value(cond);
+				if (value != null)
+					return replace(ifStmt, value != 0 ? thenStmts : elseStmts);
+				if (cond instanceof AST.UnExpr unExpr && unExpr.oper == AST.UnExpr.Oper.NOT) {
+					cond = unExpr.expr;
+					final AST.Nodes<AST.Stmt> stmts = thenStmts;
+					thenStmts = elseStmts;
+					elseStmts = stmts;
+				}
+				if (cond == ifStmt.cond && thenStmts == ifStmt.thenStmts && elseStmts == ifStmt.elseStmts)
+					return ifStmt;
+				return replace(ifStmt, new AST.IfStmt(cond, thenStmts.getAll(), elseStmts.getAll()));
+			}
+
+			@Override
+			public AST.Node visit(final AST.WhileStmt whileStmt, final Object arg) {
+				final AST.Expr cond = (AST.Expr) whileStmt.cond.accept(this, arg);
+				final Integer value = value(cond);
+				if (value != null && value == 0)
+					return replace(whileStmt, new AST.Nodes<AST.Stmt>());
+				final AST.Nodes<AST.Stmt> stmts = nodes(whileStmt.stmts);
+				if (cond == whileStmt.cond && stmts == whileStmt.stmts)
+					return whileStmt;
+				return replace(whileStmt, new AST.WhileStmt(cond, stmts.getAll()));
+			}
+
+			@Override
+			public AST.Node visit(final AST.LetStmt letStmt, final Object arg) {
+				final AST.Nodes<AST.MainDef> defs = nodes(letStmt.defs);
+				final AST.Nodes<AST.Stmt> stmts = nodes(letStmt.stmts);
+				if (defs == letStmt.defs && stmts == letStmt.stmts)
+					return letStmt;
+				return replace(letStmt, new AST.LetStmt(defs.getAll(), stmts.getAll()));
+			}
+
+			@Override
+			public AST.Node visit(final AST.AtomExpr atomExpr, final Object arg) {
+				return atomExpr;
+			}
+
+			@Override
+			public AST.Node visit(final AST.UnExpr unExpr, final Object arg) {
+				final AST.Expr expr = (AST.Expr) unExpr.expr.accept(this, arg);
+				final Integer value = value(expr);
+				switch (unExpr.oper) {
+				case ADD:
+					return replace(unExpr, expr);
+				case SUB:
+					if (value != null)
+						return intConst(unExpr, -value);
+					if (expr instanceof AST.UnExpr subExpr && subExpr.oper == AST.UnExpr.Oper.SUB)
+						return replace(unExpr, subExpr.expr);
+					break;
+				case NOT:
+					if (value != null)
+						return intConst(unExpr, value == 0 ? 1 : 0);
+					break;
+				default:
+					break;
+				}
+				if (expr == unExpr.expr)
+					return unExpr;
+				return replace(unExpr, new AST.UnExpr(unExpr.oper, expr));
+			}
+
+			@Override
+			public AST.Node visit(final AST.BinExpr binExpr, final Object arg) {
+				final AST.Expr fstExpr = (AST.Expr) binExpr.fstExpr.accept(this, arg);
+				final AST.Expr sndExpr = (AST.Expr) binExpr.sndExpr.accept(this, arg);
+				final Integer fst = value(fstExpr);
+				final Integer snd = value(sndExpr);
+
+				// izracun konstantnega izraza:
+				if (fst != null && snd != null) {
+					if ((binExpr.oper == AST.BinExpr.Oper.DIV || binExpr.oper == AST.BinExpr.Oper.MOD) && snd == 0)
+						return rebuild(binExpr, fstExpr, sndExpr); // deljenje z 0 se izvede sele med izvajanjem
+					return intConst(binExpr, oper(binExpr.oper, fst, snd));
+				}
+
+				// algebrske poenostavitve:
+				switch (binExpr.oper) {
+				case ADD:
+				case SUB: {
+					if (fst != null && fst == 0)
+						return binExpr.oper == AST.BinExpr.Oper.ADD ? replace(binExpr, sndExpr)
+								: replace(binExpr, new AST.UnExpr(AST.UnExpr.Oper.SUB, sndExpr));
+					if (snd == null)
+						break;
+					// (x + a) + b, (x - a) + b, (x + a) - b, (x - a) - b:
+					int sum = binExpr.oper == AST.BinExpr.Oper.ADD ? snd : -snd;
+					AST.Expr expr = fstExpr;
+					if (fstExpr instanceof AST.BinExpr fstBinExpr
+							&& (fstBinExpr.oper == AST.BinExpr.Oper.ADD || fstBinExpr.oper == AST.BinExpr.Oper.SUB)
+							&& value(fstBinExpr.sndExpr) instanceof Integer fstSnd) {
+						sum += fstBinExpr.oper == AST.BinExpr.Oper.ADD ? fstSnd : -fstSnd;
+						expr = fstBinExpr.fstExpr;
+					} else if (snd == 0)
+						return replace(binExpr, fstExpr);
+					if (expr == fstExpr)
+						break;
+					if (sum == 0)
+						return replace(binExpr, expr);
+					return replace(binExpr, new AST.BinExpr(AST.BinExpr.Oper.ADD, expr, intConst(sndExpr, sum)));
+				}
+				case MUL: {
+					if (fst != null && fst == 1)
+						return replace(binExpr, sndExpr);
+					if (snd != null && snd == 1)
+						return replace(binExpr, fstExpr);
+					if ((fst != null && fst == 0 && isPure(sndExpr)) || (snd != null && snd == 0 && isPure(fstExpr)))
+						return intConst(binExpr, 0);
+					break;
+				}
+				case DIV: {
+					if (snd != null && snd == 1)
+						return replace(binExpr, fstExpr);
+					break;
+				}
+				case MOD: {
+					if (snd != null && (snd == 1 || snd == -1) && isPure(fstExpr))
+						return intConst(binExpr, 0);
+					break;
+				}
+				case AND: {
+					if ((fst != null && fst == 0 && isPure(sndExpr)) || (snd != null && snd == 0 && isPure(fstExpr)))
+						return intConst(binExpr, 0);
+					break;
+				}
+				case OR: {
+					if ((fst != null && fst != 0 && isPure(sndExpr)) || (snd != null && snd != 0 && isPure(fstExpr)))
+						return intConst(binExpr, 1);
+					break;
+				}
+				default:
+					break;
+				}
+				return rebuild(binExpr, fstExpr, sndExpr);
+			}
+
+			/**
+			 * Vrne dvomestni izraz z optimiziranima podizrazoma.
+			 *
+			 * @param binExpr Dvomestni izraz.
+			 * @param fstExpr Optimiziran prvi podizraz.
+			 * @param sndExpr Optimiziran drugi podizraz.
+			 * @return Dvomestni izraz z optimiziranima podizrazoma.
+			 */
+			private AST.Expr rebuild(final AST.BinExpr binExpr, final AST.Expr fstExpr, final AST.Expr sndExpr) {
+				if (fstExpr == binExpr.fstExpr && sndExpr == binExpr.sndExpr)
+					return binExpr;
+				return replace(binExpr, new AST.BinExpr(binExpr.oper, fstExpr, sndExpr));
+			}
+
+			@Override
+			public AST.Node visit(final AST.VarExpr varExpr, final Object arg) {
+				return varExpr;
+			}
+
+			@Override
+			public AST.Node visit(final AST.CallExpr callExpr, final Object arg) {
+				final AST.Nodes<AST.Expr> args = nodes(callExpr.args);
+				if (reachableDefs == null && def(callExpr) instanceof AST.FunDef funDef) {
+					final Inline inline = inline(funDef);
+					if (inline != null && inline.isExpr() && canBind(inline, args)) {
+						final AST.ExprStmt body = (AST.ExprStmt) funDef.stmts.get(0);
+						return body.expr.accept(new InlineVisitor(funDef, args), null).accept(this, arg);
+					}
+				}
+				if (args == callExpr.args)
+					return callExpr;
+				return replace(callExpr, new AST.CallExpr(callExpr.name, args.getAll()));
+			}
+
+		}
+
+	}
+
+	// --- ZAGON ---
+
+	/**
+	 * Zagon optimizacije abstraktnega sintaksnega drevesa kot samostojnega
+	 * programa.
+	 *
+	 * @param cmdLineArgs Argumenti v ukazni vrstici.
+	 */
+	public static void main(final String[] cmdLineArgs) {
+		System.out.println("This is PINS'24 compiler (abstract syntax tree optimization):");
+
+		try {
+			if (cmdLineArgs.length == 0)
+				throw new Report.Error("No source file specified in the command line.");
+			if (cmdLineArgs.length > 1)
+				Report.warning("Unused arguments in the command line.");
+
+			try (SynAn synAn = new SynAn(cmdLineArgs[0])) {
+				// abstraktna sintaksa:
+				final Abstr.AttrAST abstrAttrAST = Abstr.constructAST(synAn);
+				// semanticna analiza:
+				final SemAn.AttrAST semanAttrAST = SemAn.analyze(abstrAttrAST);
+				// optimizacija abstraktnega sintaksnega drevesa:
+				final List<AST.Def> removedDefs = new ArrayList<AST.Def>();
+				final SemAn.AttrAST optAttrAST = optimize(semanAttrAST, removedDefs);
+
+				(new AST.Logger(optAttrAST)).log();
+				report(semanAttrAST, removedDefs);
+			}
+
+			// Upajmo, da kdaj pridemo to te tocke.
+			// A zavedajmo se sledecega:
+			// 1. Prevod je zaradi napak v programu lahko napacen :-o
+			// 2. Izvorni program se zdalec ni tisto, kar je programer hotel, da bi bil ;-)
+			Report.info("Done.");
+		} catch (Report.Error error) {
+			// Izpis opisa napake.
+			System.err.println(error.getMessage());
+			System.exit(1);
+		}
+	}
+
+}
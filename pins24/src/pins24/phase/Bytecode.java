@@ -0,0 +1,1742 @@
+package pins24.phase;
+
+import java.io.*;
+import java.lang.invoke.*;
+import java.nio.*;
+import java.util.*;
+import pins24.common.*;
+
+/**
+ * Prevajanje podprogramov v bajtno kodo JVM.
+ *
+ * Vsak podprogram (od oznake z imenom klicnega zapisa do ukaza {@code RETN})
+ * se prevede v staticno metodo skrite (angl. hidden) razreda, ki ga nalozi JVM
+ * in ga po potrebi prevede v strojno kodo. Prevedena koda uporablja isti
+ * pomnilnik in isti klicni dogovor kot skladovni stroj: argumenti, staticna
+ * povezava, {@code FP} in povratni naslov so na skladu v pomnilniku, prav tako
+ * vse vrednosti, ki ostanejo na skladu na koncu osnovnega bloka ali ob klicu.
+ * Le vrednosti, ki nastanejo in se porabijo znotraj osnovnega bloka, se hranijo
+ * v lokalnih spremenljivkah metode.
+ *
+ * Podprogram, ki ga ni mogoce prevesti (npr. ker je prevelik), se izvaja s
+ * skladovnim strojem.
+ */
+public class Bytecode {
+
+	@SuppressWarnings({ "doclint:missing" })
+	public Bytecode() {
+		throw new Report.InternalError();
+	}
+
+	/** Najvecje stevilo vrednosti sklada, ki se hranijo v lokalnih spremenljivkah. */
+	static final int MAX_DEPTH = 16;
+
+	/**
+	 * Najvecje stevilo gnezdenih klicev prevedene kode (globlje gnezdeni klici se
+	 * izvedejo s skladovnim strojem, da sklad JVM ne preraste).
+	 */
+	static final int MAX_CALL_DEPTH = 256;
+
+	/**
+	 * Najvecja velikost bajtne kode podprograma (vecjih metod JVM ne prevaja v
+	 * strojno kodo).
+	 */
+	private static final int MAX_CODE_SIZE = 8000;
+
+	/**
+	 * Prevedena koda.
+	 */
+	interface Code {
+
+		/**
+		 * Izvede preveden podprogram od zacetka ali od oznake v podprogramu naprej
+		 * (ko se zanka v podprogramu, ki se izvaja s skladovnim strojem, izvaja
+		 * dovolj pogosto). Na skladu so ze argumenti, staticna povezava, {@code FP}
+		 * klicatelja in povratni naslov, ob vstopu pri oznaki pa tudi vse vrednosti,
+		 * ki jih je tja prenesel skladovni stroj.
+		 *
+		 * @param addr  Naslov podprograma.
+		 * @param entry Naslov podprograma ali naslov oznake v podprogramu.
+		 * @param rt    Stanje stroja.
+		 * @param sp    Skladovni kazalec.
+		 * @param fp    Klicni kazalec podprograma.
+		 * @return Skladovni kazalec po vrnitvi (na vrhu sklada je rezultat).
+		 */
+		int call(int addr, int entry, Runtime rt, int sp, int fp);
+
+	}
+
+	/**
+	 * Stanje stroja, kot ga vidi prevedena koda.
+	 */
+	abstract static class Runtime {
+
+		/** Pomnilnik. */
+		final byte[] memory;
+
+		/**
+		 * Prevedena koda, indeksirana z naslovom podprograma ({@code null} za
+		 * podprograme, ki se se niso prevedeni).
+		 */
+		final Code[] table;
+
+		/** Stevilo ukazov, ki jih program se sme izvesti. */
+		long budget;
+
+		/**
+		 * Vrednosti sklada, ki jih ima prevedena koda ob trku sklada s kopico v
+		 * lokalnih spremenljivkah (pri zbiranju smeti so lahko kazalci).
+		 */
+		final int[] pending = new int[MAX_DEPTH];
+
+		/** Stevilo gnezdenih klicev prevedene kode (glej {@link #MAX_CALL_DEPTH}). */
+		int callDepth;
+
+		/**
+		 * Ustvari stanje stroja.
+		 *
+		 * @param memory Pomnilnik.
+		 * @param table  Prevedena koda, indeksirana z naslovom podprograma.
+		 */
+		Runtime(final byte[] memory, final Code[] table) {
+			this.memory = memory;
+			this.table = table;
+		}
+
+		/**
+		 * Vrne kazalec na prvi prosti naslov nad kopico.
+		 *
+		 * @return Kazalec na prvi prosti naslov nad kopico.
+		 */
+		abstract int heapTop();
+
+		/**
+		 * Ob trku sklada s kopico poskusi sprostiti prostor, sicer sprozi napako.
+		 *
+		 * @param sp         Trenutni skladovni kazalec.
+		 * @param newSP      Nova vrednost skladovnega kazalca.
+		 * @param numPending Stevilo vrednosti v {@link #pending}.
+		 * @return Kazalec na prvi prosti naslov nad kopico.
+		 */
+		abstract int growStack(int sp, int newSP, int numPending);
+
+		/**
+		 * Izvede ukaz s skladovnim strojem (npr. sistemski klic, klic podprograma,
+		 * ki ni preveden skupaj s klicateljem, ali {@code INIT}). Ce ukaz prenese
+		 * izvajanje drugam, se izvajanje s skladovnim strojem nadaljuje, dokler se
+		 * ne vrne na naslednji ukaz. Ukaz je ze stet med izvedenimi ukazi.
+		 *
+		 * @param sp Skladovni kazalec (z operandi ukaza).
+		 * @param fp Klicni kazalec.
+		 * @param pc Naslov ukaza.
+		 * @return Skladovni kazalec po izvedbi ukaza.
+		 */
+		abstract int exec(int sp, int fp, int pc);
+
+		/**
+		 * Izvede ukaz {@code TCAL} s skladovnim strojem in nadaljuje izvajanje,
+		 * dokler se klicani podprogram ne vrne tja, kamor bi se vrnil klicatelj. Ukaz
+		 * je ze stet med izvedenimi ukazi.
+		 *
+		 * @param sp Skladovni kazalec (z operandi ukaza).
+		 * @param fp Klicni kazalec klicatelja.
+		 * @param pc Naslov ukaza.
+		 * @return Skladovni kazalec po vrnitvi (na vrhu sklada je rezultat).
+		 */
+		abstract int tailCall(int sp, int fp, int pc);
+
+		/**
+		 * Sprozi napako ob prekoracitvi najvecjega stevila ukazov.
+		 *
+		 * @param pc Naslov ukaza.
+		 * @return Napaka.
+		 */
+		abstract Report.Error budgetExceeded(int pc);
+
+	}
+
+	/**
+	 * Izjema, s katero se ob sistemskem klicu {@code exit} zapusti prevedena
+	 * koda.
+	 */
+	static final class Exit extends RuntimeException {
+
+		private static final long serialVersionUID = 1L;
+
+		/** Ustvari izjemo brez sklada klicev. */
+		private Exit() {
+			super(null, null, false, false);
+		}
+
+	}
+
+	/** Izjema ob sistemskem klicu {@code exit}. */
+	static final Exit EXIT = new Exit();
+
+	// --- POMOZNE METODE PREVEDENE KODE ---
+
+	/** Dostop do 32-bitnih besed v pomnilniku (little-endian). */
+	private static final VarHandle WORD = MethodHandles.byteArrayViewVarHandle(int[].class,
+			ByteOrder.LITTLE_ENDIAN);
+
+	/**
+	 * Prebere vrednost iz pomnilnika.
+	 *
+	 * @param memory Pomnilnik.
+	 * @param addr   Pomnilniski naslov.
+	 * @param lo     Najnizji veljavni naslov (velikost segmenta z ukazi).
+	 * @return Vrednost.
+	 */
+	static int load(final byte[] memory, final int addr, final int lo) {
+		if (addr < lo || addr > memory.length - 4)
+			throw new Report.InternalError();
+		return (int) WORD.get(memory, addr);
+	}
+
+	/**
+	 * Shrani vrednost v pomnilnik.
+	 *
+	 * @param memory Pomnilnik.
+	 * @param addr   Pomnilniski naslov.
+	 * @param value  Vrednost.
+	 * @param lo     Najnizji veljavni naslov (velikost segmenta z ukazi).
+	 */
+	static void save(final byte[] memory, final int addr, final int value, final int lo) {
+		if (addr < lo || addr > memory.length - 4)
+			throw new Report.InternalError();
+		WORD.set(memory, addr, value);
+	}
+
+	/**
+	 * Pocisti obmocje pomnilnika.
+	 *
+	 * @param memory  Pomnilnik.
+	 * @param begAddr Zacetni naslov obmocja.
+	 * @param endAddr Koncni naslov obmocja (ni vkljucen).
+	 */
+	static void clear(final byte[] memory, final int begAddr, final int endAddr) {
+		Arrays.fill(memory, begAddr, endAddr, (byte) 0);
+	}
+
+	// --- PREVAJANJE ---
+
+	/**
+	 * Podprogram v kodi programa.
+	 *
+	 * @param name    Ime podprograma.
+	 * @param begAddr Naslov prvega ukaza.
+	 * @param endAddr Naslov ukaza {@code RETN}.
+	 */
+	record Function(String name, int begAddr, int endAddr) {
+	}
+
+	/**
+	 * Poisce podprograme v kodi programa.
+	 *
+	 * @param instrs      Ukazi kode programa, indeksirani z naslovom ukaza.
+	 * @param labelToAddr Preslikava imen oznak v fizicne naslove.
+	 * @return Podprogrami, urejeni po naslovih.
+	 */
+	static List<Function> functions(final PDM.INSTR[] instrs, final Map<String, Integer> labelToAddr) {
+		final List<Function> functions = new ArrayList<Function>();
+		int prevEndAddr = -1;
+		for (int addr = 0; addr < instrs.length; addr++) {
+			if (!(instrs[addr] instanceof PDM.RETN retn) || retn.debugFrame == null)
+				continue;
+			final Integer begAddr = labelToAddr.get(retn.debugFrame.name);
+			if (begAddr != null && begAddr > prevEndAddr && begAddr <= addr)
+				functions.add(new Function(retn.debugFrame.name, begAddr, addr));
+			prevEndAddr = addr;
+		}
+		return functions;
+	}
+
+	/**
+	 * Poisce podprograme, ki so del cikla v grafu klicev, v katerem je vsaj en
+	 * repni klic (repni klici podprograma samega sebe se ne stejejo, saj se
+	 * prevedejo v skok).
+	 *
+	 * @param instrs      Ukazi kode programa, indeksirani z naslovom ukaza.
+	 * @param labelToAddr Preslikava imen oznak v fizicne naslove.
+	 * @return Naslovi podprogramov v ciklih z repnimi klici.
+	 */
+	static Set<Integer> tailCycles(final PDM.INSTR[] instrs, final Map<String, Integer> labelToAddr) {
+		final Set<Integer> tailCycles = new HashSet<Integer>();
+		final Map<Integer, Set<Integer>> callees = new HashMap<Integer, Set<Integer>>();
+		final Map<Integer, Set<Integer>> callers = new HashMap<Integer, Set<Integer>>();
+		final List<int[]> tailCalls = new ArrayList<int[]>();
+		for (final Function function : functions(instrs, labelToAddr)) {
+			callees.put(function.begAddr(), new HashSet<Integer>());
+			callers.put(function.begAddr(), new HashSet<Integer>());
+		}
+		for (final Function function : functions(instrs, labelToAddr)) {
+			PDM.INSTR prevInstr = null;
+			for (int addr = function.begAddr(); addr <= function.endAddr(); addr++) {
+				final PDM.INSTR instr = instrs[addr];
+				if (instr == null)
+					continue;
+				final PDM.INSTR prev = prevInstr;
+				prevInstr = instr;
+				final boolean tail;
+				final Integer target;
+				if (instr instanceof PDM.TCAL tcal) {
+					tail = true;
+					target = tcal.debugFrame == null ? null : labelToAddr.get(tcal.debugFrame.name);
+				} else if (instr instanceof PDM.CALL && prev instanceof PDM.NAME name) {
+					// naslov klicanega podprograma je tik pred klicem prenesen na sklad:
+					tail = false;
+					target = labelToAddr.get(name.name);
+				} else
+					continue;
+				if (target == null || !callees.containsKey(target)) {
+					if (tail)
+						tailCycles.add(function.begAddr());
+					continue;
+				}
+				if (tail && target == function.begAddr())
+					continue;
+				callees.get(function.begAddr()).add(target);
+				callers.get(target).add(function.begAddr());
+				if (tail)
+					tailCalls.add(new int[] { function.begAddr(), target });
+			}
+		}
+		// cikel skozi repni klic tvorijo podprogrami, ki so dosegljivi iz klicanega
+		// podprograma in iz katerih je dosegljiv klicatelj:
+		for (final int[] tailCall : tailCalls) {
+			final Set<Integer> reachable = reachable(tailCall[1], callees);
+			if (!reachable.contains(tailCall[0]))
+				continue;
+			for (final Integer addr : reachable(tailCall[0], callers))
+				if (reachable.contains(addr))
+					tailCycles.add(addr);
+		}
+		return tailCycles;
+	}
+
+	/**
+	 * Poisce podprograme, dosegljive iz danega podprograma.
+	 *
+	 * @param begAddr Naslov podprograma.
+	 * @param edges   Povezave v grafu klicev, indeksirane z naslovom podprograma.
+	 * @return Naslovi dosegljivih podprogramov (skupaj z danim podprogramom).
+	 */
+	private static Set<Integer> reachable(final int begAddr, final Map<Integer, Set<Integer>> edges) {
+		final Set<Integer> visited = new HashSet<Integer>();
+		final Deque<Integer> work = new ArrayDeque<Integer>();
+		work.push(begAddr);
+		while (!work.isEmpty()) {
+			final Integer addr = work.pop();
+			if (visited.add(addr))
+				work.addAll(edges.get(addr));
+		}
+		return visited;
+	}
+
+	/**
+	 * Prevede podprograme v bajtno kodo JVM.
+	 *
+	 * @param functions       Podprogrami, ki jih je treba prevesti.
+	 * @param instrs          Ukazi kode programa, indeksirani z naslovom ukaza.
+	 * @param labelToAddr     Preslikava imen oznak v fizicne naslove.
+	 * @param addrToLabel     Preslikava fizicnih naslovov v imena oznak.
+	 * @param codeSegmentSize Velikost segmenta z ukazi kode programa.
+	 * @param table           Prevedena koda, indeksirana z naslovom podprograma,
+	 *                        kamor se vpisejo prevedeni podprogrami (podprogrami,
+	 *                        ki jih ni mogoce prevesti, se izpustijo).
+	 */
+	static void compile(final List<Function> functions, final PDM.INSTR[] instrs,
+			final Map<String, Integer> labelToAddr, final Map<Integer, String> addrToLabel,
+			final int codeSegmentSize, final Code[] table) {
+		// podprogrami, ki jih ni mogoce prevesti, se izlocijo, nato pa se prevajanje
+		// ponovi, saj jih prevedeni podprogrami ne smejo klicati neposredno:
+		// podprogrami v ciklih z repnimi klici se ne prevedejo, saj bi vsak repni klic
+		// povecal sklad JVM (skladovni stroj jih izvaja s stalno velikostjo sklada):
+		final Set<Integer> tailCycles = tailCycles(instrs, labelToAddr);
+		final Set<Integer> entries = new HashSet<Integer>();
+		for (final Function function : functions)
+			if (!tailCycles.contains(function.begAddr()))
+				entries.add(function.begAddr());
+		ClassWriter classWriter;
+		List<Function> compiled;
+		while (true) {
+			classWriter = new ClassWriter();
+			compiled = new ArrayList<Function>();
+			for (final Function function : functions) {
+				if (!entries.contains(function.begAddr()))
+					continue;
+				final FunctionCompiler compiler = new FunctionCompiler(classWriter, function, instrs, labelToAddr,
+						addrToLabel, codeSegmentSize, entries);
+				final byte[] code = compiler.compile();
+				if (code == null)
+					continue;
+				classWriter.method(ClassWriter.ACC_PUBLIC | ClassWriter.ACC_STATIC, methodName(function.begAddr()),
+						FUNCTION_DESC, FunctionCompiler.SLOTS + MAX_DEPTH, code);
+				compiled.add(function);
+			}
+			if (compiled.size() == entries.size())
+				break;
+			entries.clear();
+			for (final Function function : compiled)
+				entries.add(function.begAddr());
+		}
+		if (compiled.isEmpty())
+			return;
+
+		// konstruktor:
+		{
+			final Asm asm = new Asm(classWriter);
+			asm.op(Asm.ALOAD_0);
+			asm.op(Asm.INVOKESPECIAL, classWriter.methodref("java/lang/Object", "<init>", "()V"));
+			asm.op(Asm.RETURN);
+			classWriter.method(ClassWriter.ACC_PUBLIC, "<init>", "()V", 1, asm.finish());
+		}
+		// vstopna tocka:
+		{
+			final Asm asm = new Asm(classWriter);
+			final int[] keys = new int[compiled.size()];
+			final Asm.Label[] labels = new Asm.Label[compiled.size()];
+			for (int f = 0; f < compiled.size(); f++) {
+				keys[f] = compiled.get(f).begAddr();
+				labels[f] = asm.label();
+			}
+			final Asm.Label dflt = asm.label();
+			asm.iload(1);
+			asm.lookupswitch(dflt, keys, labels);
+			for (int f = 0; f < compiled.size(); f++) {
+				asm.place(labels[f]);
+				asm.aload(3);
+				asm.iload(4);
+				asm.iload(5);
+				asm.iload(2);
+				asm.op(Asm.INVOKESTATIC, classWriter.methodref(CLASS_NAME, methodName(keys[f]), FUNCTION_DESC));
+				asm.op(Asm.IRETURN);
+			}
+			asm.place(dflt);
+			asm.internalError();
+			classWriter.method(ClassWriter.ACC_PUBLIC, "call", CODE_DESC, 6, asm.finish());
+		}
+
+		final Code code;
+		try {
+			final MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass(classWriter.toBytes(), true);
+			code = (Code) lookup.findConstructor(lookup.lookupClass(), MethodType.methodType(void.class)).invoke();
+		} catch (Throwable throwable) {
+			throw new Report.InternalError();
+		}
+		for (final Function function : compiled)
+			table[function.begAddr()] = code;
+	}
+
+	/** Ime razreda s prevedeno kodo. */
+	private static final String CLASS_NAME = "pins24/phase/Bytecode$Program";
+
+	/** Opisnik stanja stroja. */
+	private static final String RUNTIME_DESC = "Lpins24/phase/Bytecode$Runtime;";
+
+	/** Opisnik metode, ki predstavlja preveden podprogram. */
+	private static final String FUNCTION_DESC = "(" + RUNTIME_DESC + "III)I";
+
+	/** Ime vmesnika {@link Code}. */
+	private static final String CODE_NAME = "pins24/phase/Bytecode$Code";
+
+	/** Opisnik metode {@link Code#call(int, int, Runtime, int, int)}. */
+	private static final String CODE_DESC = "(II" + RUNTIME_DESC + "II)I";
+
+	/**
+	 * Vrne ime metode, ki predstavlja preveden podprogram.
+	 *
+	 * @param addr Naslov podprograma.
+	 * @return Ime metode.
+	 */
+	private static String methodName(final int addr) {
+		return "f" + addr;
+	}
+
+	/**
+	 * Prevajalnik enega podprograma.
+	 *
+	 * Vrednosti, ki so na skladu nad pomnilniskim skladom (navidezni sklad), so
+	 * konstante, {@code FP} ali vrednosti v lokalnih spremenljivkah. Navidezni
+	 * sklad se zapise v pomnilnik na koncu osnovnega bloka, pred klicem in pred
+	 * ukazi, ki potrebujejo dejansko vsebino sklada.
+	 */
+	private static class FunctionCompiler {
+
+		/** Lokalna spremenljivka s stanjem stroja. */
+		private static final int RT = 0;
+
+		/** Lokalna spremenljivka s skladovnim kazalcem. */
+		private static final int SP = 1;
+
+		/** Lokalna spremenljivka s klicnim kazalcem. */
+		private static final int FP = 2;
+
+		/** Lokalna spremenljivka z naslovom, pri katerem se zacne izvajanje. */
+		private static final int ENTRY = 3;
+
+		/** Lokalna spremenljivka s pomnilnikom. */
+		private static final int MEM = 4;
+
+		/** Lokalna spremenljivka s kazalcem na prvi prosti naslov nad kopico. */
+		private static final int HP = 5;
+
+		/** Pomozna lokalna spremenljivka. */
+		private static final int TMP = 6;
+
+		/** Lokalna spremenljivka s prevedeno kodo klicanega podprograma. */
+		private static final int CODE = 7;
+
+		/** Prva lokalna spremenljivka navideznega sklada. */
+		private static final int SLOTS = 8;
+
+		/** Vrsta vrednosti na navideznem skladu: konstanta. */
+		private static final int CONST = 0;
+
+		/** Vrsta vrednosti na navideznem skladu: vrednost registra {@code FP}. */
+		private static final int REG_FP = 1;
+
+		/** Vrsta vrednosti na navideznem skladu: vrednost v lokalni spremenljivki. */
+		private static final int SLOT = 2;
+
+		/** Zapis razreda. */
+		private final ClassWriter classWriter;
+
+		/** Podprogram. */
+		private final Function function;
+
+		/** Ukazi kode programa, indeksirani z naslovom ukaza. */
+		private final PDM.INSTR[] instrs;
+
+		/** Preslikava imen oznak v fizicne naslove. */
+		private final Map<String, Integer> labelToAddr;
+
+		/** Preslikava fizicnih naslovov v imena oznak. */
+		private final Map<Integer, String> addrToLabel;
+
+		/** Velikost segmenta z ukazi kode programa. */
+		private final int codeSegmentSize;
+
+		/** Naslovi podprogramov, ki se prevajajo skupaj. */
+		private final Set<Integer> entries;
+
+		/** Zbirnik bajtne kode. */
+		private final Asm asm;
+
+		/** Oznake v bajtni kodi, indeksirane z naslovi oznak podprograma. */
+		private final TreeMap<Integer, Asm.Label> labels = new TreeMap<Integer, Asm.Label>();
+
+		/** Vrste vrednosti na navideznem skladu. */
+		private final int[] kinds = new int[MAX_DEPTH];
+
+		/** Konstante na navideznem skladu. */
+		private final int[] consts = new int[MAX_DEPTH];
+
+		/** Globina navideznega sklada. */
+		private int depth = 0;
+
+		/**
+		 * Ustvari prevajalnik enega podprograma.
+		 *
+		 * @param classWriter     Zapis razreda.
+		 * @param function        Podprogram.
+		 * @param instrs          Ukazi kode programa, indeksirani z naslovom ukaza.
+		 * @param labelToAddr     Preslikava imen oznak v fizicne naslove.
+		 * @param addrToLabel     Preslikava fizicnih naslovov v imena oznak.
+		 * @param codeSegmentSize Velikost segmenta z ukazi kode programa.
+		 * @param entries         Naslovi podprogramov, ki se prevajajo skupaj.
+		 */
+		FunctionCompiler(final ClassWriter classWriter, final Function function, final PDM.INSTR[] instrs,
+				final Map<String, Integer> labelToAddr, final Map<Integer, String> addrToLabel,
+				final int codeSegmentSize, final Set<Integer> entries) {
+			this.classWriter = classWriter;
+			this.function = function;
+			this.instrs = instrs;
+			this.labelToAddr = labelToAddr;
+			this.addrToLabel = addrToLabel;
+			this.codeSegmentSize = codeSegmentSize;
+			this.entries = entries;
+			this.asm = new Asm(classWriter);
+		}
+
+		/**
+		 * Prevede podprogram.
+		 *
+		 * @return Bajtna koda metode ali {@code null}, ce podprograma ni mogoce
+		 *         prevesti.
+		 */
+		byte[] compile() {
+			for (int addr = function.begAddr() + 1; addr <= function.endAddr(); addr++)
+				if (addrToLabel.containsKey(addr))
+					labels.put(addr, asm.label());
+			// repni klic samega sebe je skok na zacetek podprograma:
+			for (int addr = function.begAddr(); addr <= function.endAddr(); addr++)
+				if (instrs[addr] instanceof PDM.TCAL tcal && tcal.debugFrame != null
+						&& tcal.debugFrame.name.equals(function.name()))
+					labels.put(function.begAddr(), asm.label());
+
+			// MEM = rt.memory, HP = rt.heapTop()
+			asm.aload(RT);
+			asm.op(Asm.GETFIELD, classWriter.fieldref(RUNTIME, "memory", "[B"));
+			asm.astore(MEM);
+			reloadHeapTop();
+			// vstop pri oznaki:
+			if (!labels.isEmpty()) {
+				final Asm.Label body = asm.label();
+				asm.iload(ENTRY);
+				asm.iconst(function.begAddr());
+				asm.branch(Asm.IF_ICMPEQ, body);
+				asm.iload(ENTRY);
+				dispatch();
+				asm.place(body);
+			}
+
+			boolean reachable = true;
+			boolean segmentStart = true;
+			for (int addr = function.begAddr(); addr <= function.endAddr();) {
+				final Asm.Label label = labels.get(addr);
+				if (label != null) {
+					if (reachable)
+						materialize();
+					asm.place(label);
+					reachable = true;
+					segmentStart = true;
+				}
+				final PDM.INSTR instr = instrs[addr];
+				if (instr == null)
+					return null;
+				if (reachable) {
+					if (segmentStart)
+						charge(addr);
+					segmentStart = instr instanceof PDM.CALL;
+					reachable = instr(addr, instr);
+				}
+				addr += ((PDM.CodeInstr) instr).size();
+			}
+			if (reachable)
+				asm.internalError();
+
+			final byte[] code = asm.finish();
+			return code == null || code.length > MAX_CODE_SIZE ? null : code;
+		}
+
+		/** Ime razreda s stanjem stroja. */
+		private static final String RUNTIME = "pins24/phase/Bytecode$Runtime";
+
+		/** Ime razreda s pomoznimi metodami. */
+		private static final String BYTECODE = "pins24/phase/Bytecode";
+
+		/**
+		 * Izracuna stevilo ukazov od danega naslova do konca osnovnega bloka in ga
+		 * odsteje od stevila ukazov, ki jih program se sme izvesti.
+		 *
+		 * @param begAddr Naslov prvega ukaza osnovnega bloka.
+		 */
+		private void charge(final int begAddr) {
+			int numInstrs = 0;
+			for (int addr = begAddr; addr <= function.endAddr();) {
+				if (addr != begAddr && labels.containsKey(addr))
+					break;
+				final PDM.INSTR instr = instrs[addr];
+				numInstrs++;
+				if (instr instanceof PDM.CALL || instr instanceof PDM.UJMP || instr instanceof PDM.CJMP
+						|| instr instanceof PDM.RETN || instr instanceof PDM.TCAL)
+					break;
+				addr += ((PDM.CodeInstr) instr).size();
+			}
+			// if ((rt.budget -= numInstrs) < 0) throw rt.budgetExceeded(begAddr)
+			final Asm.Label ok = asm.label();
+			asm.aload(RT);
+			asm.op(Asm.DUP);
+			asm.op(Asm.GETFIELD, classWriter.fieldref(RUNTIME, "budget", "J"));
+			asm.iconst(numInstrs);
+			asm.op(Asm.I2L);
+			asm.op(Asm.LSUB);
+			asm.op(Asm.DUP2_X1);
+			asm.op(Asm.PUTFIELD, classWriter.fieldref(RUNTIME, "budget", "J"));
+			asm.op(Asm.LCONST_0);
+			asm.op(Asm.LCMP);
+			asm.branch(Asm.IFGE, ok);
+			asm.aload(RT);
+			asm.iconst(begAddr);
+			asm.op(Asm.INVOKEVIRTUAL,
+					classWriter.methodref(RUNTIME, "budgetExceeded", "(I)Lpins24/common/Report$Error;"));
+			asm.op(Asm.ATHROW);
+			asm.place(ok);
+		}
+
+		/**
+		 * Prevede en ukaz.
+		 *
+		 * @param addr  Naslov ukaza.
+		 * @param instr Ukaz.
+		 * @return Ali je naslednji ukaz dosegljiv.
+		 */
+		private boolean instr(final int addr, final PDM.INSTR instr) {
+			switch (instr) {
+			case PDM.PUSH i -> pushConst(i.intc);
+			case PDM.NAME i -> {
+				final Integer labelAddr = labelToAddr.get(i.name);
+				if (labelAddr == null)
+					throw new Report.InternalError();
+				pushConst(labelAddr);
+			}
+			case PDM.REGN i -> {
+				switch (i.regn) {
+				case PC -> pushConst(addr);
+				case FP -> pushFP();
+				case SP -> {
+					materialize();
+					asm.iload(SP);
+					pushJvm();
+				}
+				}
+			}
+			case PDM.LOAD i -> {
+				final int a = pop();
+				asm.aload(MEM);
+				value(a);
+				load();
+				pushJvm();
+			}
+			case PDM.SAVE i -> {
+				ensure(2);
+				final int a = pop();
+				final int v = pop();
+				asm.aload(MEM);
+				value(a);
+				value(v);
+				save();
+			}
+			case PDM.LOADFP i -> {
+				frameAddr(i.hops, i.offset);
+				asm.istore(TMP);
+				asm.aload(MEM);
+				asm.iload(TMP);
+				load();
+				pushJvm();
+			}
+			case PDM.SAVEFP i -> {
+				final int v = pop();
+				frameAddr(i.hops, i.offset);
+				asm.istore(TMP);
+				asm.aload(MEM);
+				asm.iload(TMP);
+				value(v);
+				save();
+			}
+			case PDM.OPER i -> oper(i.oper);
+			case PDM.POPN i -> popn(addr);
+			case PDM.INIT i -> {
+				materialize();
+				exec(addr);
+			}
+			case PDM.CALL i -> call(addr);
+			case PDM.TCAL i -> {
+				tcal(addr, i);
+				return false;
+			}
+			case PDM.RETN i -> {
+				ensure(2);
+				final int parsSize = pop();
+				final int result = pop();
+				// SP = FP + parsSize, mem[SP] = result
+				asm.iload(FP);
+				value(parsSize);
+				asm.op(Asm.IADD);
+				asm.istore(SP);
+				asm.aload(MEM);
+				asm.iload(SP);
+				value(result);
+				save();
+				asm.iload(SP);
+				asm.op(Asm.IRETURN);
+				depth = 0;
+				return false;
+			}
+			case PDM.UJMP i -> {
+				final int target = pop();
+				materialize();
+				jump(target);
+				return false;
+			}
+			case PDM.CJMP i -> {
+				ensure(3);
+				final int elseTarget = pop();
+				final int thenTarget = pop();
+				final int cond = pop();
+				materialize();
+				final Asm.Label elseLabel = asm.label();
+				value(cond);
+				asm.branch(Asm.IFEQ, elseLabel);
+				jump(thenTarget);
+				asm.place(elseLabel);
+				jump(elseTarget);
+				return false;
+			}
+			default -> throw new Report.InternalError();
+			}
+			return true;
+		}
+
+		/**
+		 * Prevede skok na naslov, ki je vrednost na navideznem skladu.
+		 *
+		 * @param target Indeks vrednosti na navideznem skladu.
+		 */
+		private void jump(final int target) {
+			if (kinds[target] == CONST && labels.containsKey(consts[target])) {
+				asm.branch(Asm.GOTO, labels.get(consts[target]));
+				return;
+			}
+			value(target);
+			dispatch();
+		}
+
+		/**
+		 * Prevede skok na oznako, katere naslov je na vrhu sklada JVM.
+		 */
+		private void dispatch() {
+			final int[] keys = new int[labels.size()];
+			final Asm.Label[] targets = new Asm.Label[labels.size()];
+			int l = 0;
+			for (final Map.Entry<Integer, Asm.Label> entry : labels.entrySet()) {
+				keys[l] = entry.getKey();
+				targets[l] = entry.getValue();
+				l++;
+			}
+			final Asm.Label dflt = asm.label();
+			asm.lookupswitch(dflt, keys, targets);
+			asm.place(dflt);
+			asm.internalError();
+		}
+
+		/**
+		 * Prevede aritmeticno ali logicno operacijo.
+		 *
+		 * @param oper Operacija.
+		 */
+		private void oper(final PDM.OPER.Oper oper) {
+			switch (oper) {
+			case NOT -> {
+				value(pop());
+				bool(Asm.IFEQ);
+				pushJvm();
+				return;
+			}
+			case NEG -> {
+				value(pop());
+				asm.op(Asm.INEG);
+				pushJvm();
+				return;
+			}
+			default -> {
+			}
+			}
+			ensure(2);
+			final int snd = pop();
+			final int fst = pop();
+			switch (oper) {
+			case OR, AND -> {
+				final Asm.Label shortCircuit = asm.label();
+				final Asm.Label end = asm.label();
+				final int branch = oper == PDM.OPER.Oper.OR ? Asm.IFNE : Asm.IFEQ;
+				value(fst);
+				asm.branch(branch, shortCircuit);
+				value(snd);
+				asm.branch(branch, shortCircuit);
+				asm.iconst(oper == PDM.OPER.Oper.OR ? 0 : 1);
+				asm.branch(Asm.GOTO, end);
+				asm.place(shortCircuit);
+				asm.iconst(oper == PDM.OPER.Oper.OR ? 1 : 0);
+				asm.place(end);
+			}
+			default -> {
+				value(fst);
+				value(snd);
+				switch (oper) {
+				case EQU -> bool(Asm.IF_ICMPEQ);
+				case NEQ -> bool(Asm.IF_ICMPNE);
+				case GTH -> bool(Asm.IF_ICMPGT);
+				case LTH -> bool(Asm.IF_ICMPLT);
+				case GEQ -> bool(Asm.IF_ICMPGE);
+				case LEQ -> bool(Asm.IF_ICMPLE);
+				case ADD -> asm.op(Asm.IADD);
+				case SUB -> asm.op(Asm.ISUB);
+				case MUL -> asm.op(Asm.IMUL);
+				case DIV -> asm.op(Asm.IDIV);
+				case MOD -> asm.op(Asm.IREM);
+				default -> throw new Report.InternalError();
+				}
+			}
+			}
+			pushJvm();
+		}
+
+		/**
+		 * Pretvori pogoj v vrednost {@code 1} (pogoj je izpolnjen) ali {@code 0}.
+		 *
+		 * @param branch Ukaz pogojnega skoka.
+		 */
+		private void bool(final int branch) {
+			final Asm.Label isTrue = asm.label();
+			final Asm.Label end = asm.label();
+			asm.branch(branch, isTrue);
+			asm.iconst(0);
+			asm.branch(Asm.GOTO, end);
+			asm.place(isTrue);
+			asm.iconst(1);
+			asm.place(end);
+		}
+
+		/**
+		 * Prevede ukaz {@code POPN}.
+		 *
+		 * @param addr Naslov ukaza.
+		 */
+		private void popn(final int addr) {
+			ensure(1);
+			if (kinds[depth - 1] != CONST) {
+				materialize();
+				exec(addr);
+				return;
+			}
+			final int size = consts[pop()];
+			materialize();
+			if (size < 0) {
+				checkStack(-size, 0);
+				asm.aload(MEM);
+				asm.iload(SP);
+				asm.iconst(size);
+				asm.op(Asm.IADD);
+				asm.iload(SP);
+				asm.op(Asm.INVOKESTATIC, classWriter.methodref(BYTECODE, "clear", "([BII)V"));
+			}
+			addSP(size);
+		}
+
+		/**
+		 * Prevede ukaz {@code CALL}.
+		 *
+		 * @param addr Naslov ukaza.
+		 */
+		private void call(final int addr) {
+			ensure(1);
+			if (kinds[depth - 1] != CONST || consts[depth - 1] < 0) {
+				// sistemski klic ali klic na izracunan naslov:
+				materialize();
+				exec(addr);
+			} else {
+				// klic podprograma, ki se prevaja skupaj s klicateljem ali je morda ze
+				// preveden posebej:
+				final int target = consts[pop()];
+				materialize();
+				final Asm.Label interpreted = asm.label();
+				final Asm.Label done = asm.label();
+				asm.aload(RT);
+				asm.op(Asm.GETFIELD, classWriter.fieldref(RUNTIME, "callDepth", "I"));
+				asm.iconst(MAX_CALL_DEPTH);
+				asm.branch(Asm.IF_ICMPGE, interpreted);
+				if (entries.contains(target)) {
+					addCallDepth(1);
+					pushFrame(addr);
+					asm.aload(RT);
+					asm.iload(SP);
+					asm.iconst(8);
+					asm.op(Asm.ISUB);
+					asm.iload(SP);
+					asm.iconst(target);
+					asm.op(Asm.INVOKESTATIC, classWriter.methodref(CLASS_NAME, methodName(target), FUNCTION_DESC));
+				} else {
+					asm.aload(RT);
+					asm.op(Asm.GETFIELD, classWriter.fieldref(RUNTIME, "table", "[L" + CODE_NAME + ";"));
+					asm.iconst(target);
+					asm.op(Asm.AALOAD);
+					asm.op(Asm.DUP);
+					asm.astore(CODE);
+					asm.branch(Asm.IFNULL, interpreted);
+					addCallDepth(1);
+					pushFrame(addr);
+					asm.aload(CODE);
+					asm.iconst(target);
+					asm.iconst(target);
+					asm.aload(RT);
+					asm.iload(SP);
+					asm.iconst(8);
+					asm.op(Asm.ISUB);
+					asm.iload(SP);
+					asm.invokeinterface(classWriter.imethodref(CODE_NAME, "call", CODE_DESC), 6);
+				}
+				asm.istore(SP);
+				addCallDepth(-1);
+				reloadHeapTop();
+				asm.branch(Asm.GOTO, done);
+				asm.place(interpreted);
+				pushConst(target);
+				materialize();
+				exec(addr);
+				asm.place(done);
+			}
+			// rezultat se prenese na navidezni sklad:
+			asm.aload(MEM);
+			asm.iload(SP);
+			load();
+			pushJvm();
+			addSP(4);
+		}
+
+		/**
+		 * Prevede ukaz {@code TCAL}. Repni klic podprograma samega sebe se prevede v
+		 * premik argumentov na mesto parametrov in skok na zacetek podprograma,
+		 * ostali repni klici pa se izvedejo s skladovnim strojem.
+		 *
+		 * @param addr Naslov ukaza.
+		 * @param tcal Ukaz.
+		 */
+		private void tcal(final int addr, final PDM.TCAL tcal) {
+			ensure(1);
+			final Asm.Label begin = labels.get(function.begAddr());
+			if (kinds[depth - 1] == CONST && consts[depth - 1] == function.begAddr() && begin != null) {
+				pop();
+				materialize();
+				// System.arraycopy(memory, SP, memory, FP + parsSize - argsSize, argsSize)
+				asm.aload(MEM);
+				asm.iload(SP);
+				asm.aload(MEM);
+				asm.iload(FP);
+				asm.iconst(tcal.parsSize - tcal.argsSize);
+				asm.op(Asm.IADD);
+				asm.iconst(tcal.argsSize);
+				asm.op(Asm.INVOKESTATIC, classWriter.methodref("java/lang/System", "arraycopy",
+						"(Ljava/lang/Object;ILjava/lang/Object;II)V"));
+				// SP = FP - 8 (FP in povratni naslov klicatelja ostaneta na svojem mestu)
+				asm.iload(FP);
+				asm.iconst(8);
+				asm.op(Asm.ISUB);
+				asm.istore(SP);
+				asm.branch(Asm.GOTO, begin);
+			} else {
+				materialize();
+				asm.aload(RT);
+				asm.iload(SP);
+				asm.iload(FP);
+				asm.iconst(addr);
+				asm.op(Asm.INVOKEVIRTUAL, classWriter.methodref(RUNTIME, "tailCall", "(III)I"));
+				asm.op(Asm.IRETURN);
+			}
+			depth = 0;
+		}
+
+		// --- NAVIDEZNI SKLAD ---
+
+		/**
+		 * Doda konstanto na navidezni sklad.
+		 *
+		 * @param value Konstanta.
+		 */
+		private void pushConst(final int value) {
+			if (depth == MAX_DEPTH)
+				materialize();
+			kinds[depth] = CONST;
+			consts[depth] = value;
+			depth++;
+		}
+
+		/**
+		 * Doda vrednost registra {@code FP} na navidezni sklad.
+		 */
+		private void pushFP() {
+			if (depth == MAX_DEPTH)
+				materialize();
+			kinds[depth] = REG_FP;
+			depth++;
+		}
+
+		/**
+		 * Doda vrednost z vrha sklada JVM na navidezni sklad.
+		 */
+		private void pushJvm() {
+			if (depth == MAX_DEPTH)
+				materialize();
+			kinds[depth] = SLOT;
+			asm.istore(SLOTS + depth);
+			depth++;
+		}
+
+		/**
+		 * Vzame vrednost z navideznega sklada.
+		 *
+		 * @return Indeks vrednosti na navideznem skladu (vrednost ostane veljavna,
+		 *         dokler se na navidezni sklad ne doda nova vrednost).
+		 */
+		private int pop() {
+			ensure(1);
+			return --depth;
+		}
+
+		/**
+		 * Zagotovi, da je na navideznem skladu vsaj podano stevilo vrednosti
+		 * (manjkajoce se preberejo s pomnilniskega sklada).
+		 *
+		 * @param num Stevilo vrednosti.
+		 */
+		private void ensure(final int num) {
+			if (depth >= num)
+				return;
+			final int missing = num - depth;
+			for (int d = depth - 1; d >= 0; d--) {
+				kinds[d + missing] = kinds[d];
+				consts[d + missing] = consts[d];
+				if (kinds[d] == SLOT) {
+					asm.iload(SLOTS + d);
+					asm.istore(SLOTS + d + missing);
+				}
+			}
+			for (int d = 0; d < missing; d++) {
+				asm.aload(MEM);
+				asm.iload(SP);
+				asm.iconst(4 * (missing - 1 - d));
+				asm.op(Asm.IADD);
+				load();
+				asm.istore(SLOTS + d);
+				kinds[d] = SLOT;
+			}
+			addSP(4 * missing);
+			depth = num;
+		}
+
+		/**
+		 * Zapise navidezni sklad v pomnilnik.
+		 */
+		private void materialize() {
+			if (depth == 0)
+				return;
+			checkStack(4 * depth, depth);
+			for (int d = 0; d < depth; d++) {
+				asm.aload(MEM);
+				asm.iload(SP);
+				asm.iconst(4 * (d + 1));
+				asm.op(Asm.ISUB);
+				value(d);
+				save();
+			}
+			addSP(-4 * depth);
+			depth = 0;
+		}
+
+		/**
+		 * Prenese vrednost z navideznega sklada na sklad JVM.
+		 *
+		 * @param index Indeks vrednosti na navideznem skladu.
+		 */
+		private void value(final int index) {
+			switch (kinds[index]) {
+			case CONST -> asm.iconst(consts[index]);
+			case REG_FP -> asm.iload(FP);
+			default -> asm.iload(SLOTS + index);
+			}
+		}
+
+		// --- POMOZNE METODE ---
+
+		/**
+		 * Preveri, ali se sklad lahko poveca, ne da bi trcil s kopico.
+		 *
+		 * @param size       Povecanje sklada.
+		 * @param numPending Stevilo vrednosti na navideznem skladu, ki se pred
+		 *                   morebitnim zbiranjem smeti shranijo v
+		 *                   {@link Runtime#pending}.
+		 */
+		private void checkStack(final int size, final int numPending) {
+			final Asm.Label ok = asm.label();
+			asm.iload(SP);
+			asm.iconst(size);
+			asm.op(Asm.ISUB);
+			asm.iload(HP);
+			asm.branch(Asm.IF_ICMPGE, ok);
+			for (int d = 0; d < numPending; d++) {
+				asm.aload(RT);
+				asm.op(Asm.GETFIELD, classWriter.fieldref(RUNTIME, "pending", "[I"));
+				asm.iconst(d);
+				value(d);
+				asm.op(Asm.IASTORE);
+			}
+			asm.aload(RT);
+			asm.iload(SP);
+			asm.iload(SP);
+			asm.iconst(size);
+			asm.op(Asm.ISUB);
+			asm.iconst(numPending);
+			asm.op(Asm.INVOKEVIRTUAL, classWriter.methodref(RUNTIME, "growStack", "(III)I"));
+			asm.istore(HP);
+			asm.place(ok);
+		}
+
+		/**
+		 * Na sklad prenese {@code FP} in povratni naslov (kot ukaz {@code CALL}).
+		 *
+		 * @param addr Naslov ukaza {@code CALL}.
+		 */
+		private void pushFrame(final int addr) {
+			checkStack(8, 0);
+			asm.aload(MEM);
+			asm.iload(SP);
+			asm.iconst(4);
+			asm.op(Asm.ISUB);
+			asm.iload(FP);
+			save();
+			asm.aload(MEM);
+			asm.iload(SP);
+			asm.iconst(8);
+			asm.op(Asm.ISUB);
+			asm.iconst(addr + 1);
+			save();
+		}
+
+		/**
+		 * Prevede izvedbo ukaza s skladovnim strojem (navidezni sklad mora biti ze
+		 * zapisan v pomnilnik).
+		 *
+		 * @param addr Naslov ukaza.
+		 */
+		private void exec(final int addr) {
+			asm.aload(RT);
+			asm.iload(SP);
+			asm.iload(FP);
+			asm.iconst(addr);
+			asm.op(Asm.INVOKEVIRTUAL, classWriter.methodref(RUNTIME, "exec", "(III)I"));
+			asm.istore(SP);
+			reloadHeapTop();
+		}
+
+		/**
+		 * Spremeni stevilo gnezdenih klicev prevedene kode.
+		 *
+		 * @param delta Sprememba.
+		 */
+		private void addCallDepth(final int delta) {
+			asm.aload(RT);
+			asm.op(Asm.DUP);
+			asm.op(Asm.GETFIELD, classWriter.fieldref(RUNTIME, "callDepth", "I"));
+			asm.iconst(delta);
+			asm.op(Asm.IADD);
+			asm.op(Asm.PUTFIELD, classWriter.fieldref(RUNTIME, "callDepth", "I"));
+		}
+
+		/**
+		 * Prebere kazalec na prvi prosti naslov nad kopico.
+		 */
+		private void reloadHeapTop() {
+			asm.aload(RT);
+			asm.op(Asm.INVOKEVIRTUAL, classWriter.methodref(RUNTIME, "heapTop", "()I"));
+			asm.istore(HP);
+		}
+
+		/**
+		 * Izracuna naslov v klicnem zapisu.
+		 *
+		 * @param hops   Stevilo sledenj staticni povezavi.
+		 * @param offset Odmik od zacetka klicnega zapisa.
+		 */
+		private void frameAddr(final int hops, final int offset) {
+			asm.iload(FP);
+			for (int hop = 0; hop < hops; hop++) {
+				asm.istore(TMP);
+				asm.aload(MEM);
+				asm.iload(TMP);
+				load();
+			}
+			asm.iconst(offset);
+			asm.op(Asm.IADD);
+		}
+
+		/**
+		 * Poveca skladovni kazalec.
+		 *
+		 * @param size Povecanje.
+		 */
+		private void addSP(final int size) {
+			if (size == 0)
+				return;
+			asm.iload(SP);
+			asm.iconst(size);
+			asm.op(Asm.IADD);
+			asm.istore(SP);
+		}
+
+		/** Prebere besedo iz pomnilnika (na skladu JVM sta pomnilnik in naslov). */
+		private void load() {
+			asm.iconst(codeSegmentSize);
+			asm.op(Asm.INVOKESTATIC, classWriter.methodref(BYTECODE, "load", "([BII)I"));
+		}
+
+		/**
+		 * Shrani besedo v pomnilnik (na skladu JVM so pomnilnik, naslov in
+		 * vrednost).
+		 */
+		private void save() {
+			asm.iconst(codeSegmentSize);
+			asm.op(Asm.INVOKESTATIC, classWriter.methodref(BYTECODE, "save", "([BIII)V"));
+		}
+
+	}
+
+	// --- ZAPIS RAZREDA ---
+
+	/**
+	 * Zapis razreda v obliki datoteke {@code .class} (razlicica 49, ki ne
+	 * potrebuje tabel {@code StackMapTable}).
+	 */
+	private static class ClassWriter {
+
+		/** Javen dostop. */
+		static final int ACC_PUBLIC = 0x0001;
+
+		/** Staticna metoda. */
+		static final int ACC_STATIC = 0x0008;
+
+		/** Koncni razred. */
+		static final int ACC_FINAL = 0x0010;
+
+		/** Klic metode nadrazreda z ukazom invokespecial. */
+		static final int ACC_SUPER = 0x0020;
+
+		/** Zapis zaloge konstant. */
+		private final ByteArrayOutputStream pool = new ByteArrayOutputStream();
+
+		/** Indeksi konstant v zalogi konstant. */
+		private final HashMap<String, Integer> poolIndices = new HashMap<String, Integer>();
+
+		/** Stevilo vnosov v zalogi konstant (vkljucno z neuporabljenim vnosom 0). */
+		private int poolSize = 1;
+
+		/** Zapis metod. */
+		private final ByteArrayOutputStream methods = new ByteArrayOutputStream();
+
+		/** Stevilo metod. */
+		private int numMethods = 0;
+
+		/**
+		 * Doda konstanto v zalogo konstant.
+		 *
+		 * @param key   Kljuc konstante.
+		 * @param bytes Zapis konstante.
+		 * @return Indeks konstante.
+		 */
+		private int constant(final String key, final byte[] bytes) {
+			final Integer index = poolIndices.get(key);
+			if (index != null)
+				return index;
+			pool.writeBytes(bytes);
+			poolIndices.put(key, poolSize);
+			return poolSize++;
+		}
+
+		/**
+		 * Vrne zapis konstante, ki jo sestavljata oznaka in dva indeksa.
+		 *
+		 * @param tag Oznaka konstante.
+		 * @param fst Prvi indeks.
+		 * @param snd Drugi indeks.
+		 * @return Zapis konstante.
+		 */
+		private static byte[] pair(final int tag, final int fst, final int snd) {
+			return new byte[] { (byte) tag, (byte) (fst >> 8), (byte) fst, (byte) (snd >> 8), (byte) snd };
+		}
+
+		/**
+		 * Doda niz v zalogo konstant.
+		 *
+		 * @param string Niz (le znaki ASCII).
+		 * @return Indeks konstante.
+		 */
+		int utf8(final String string) {
+			final byte[] bytes = new byte[3 + string.length()];
+			bytes[0] = 1;
+			bytes[1] = (byte) (string.length() >> 8);
+			bytes[2] = (byte) string.length();
+			for (int c = 0; c < string.length(); c++)
+				bytes[3 + c] = (byte) string.charAt(c);
+			return constant("U" + string, bytes);
+		}
+
+		/**
+		 * Doda celo stevilo v zalogo konstant.
+		 *
+		 * @param value Celo stevilo.
+		 * @return Indeks konstante.
+		 */
+		int integer(final int value) {
+			return constant("I" + value, new byte[] { 3, (byte) (value >> 24), (byte) (value >> 16),
+					(byte) (value >> 8), (byte) value });
+		}
+
+		/**
+		 * Doda razred v zalogo konstant.
+		 *
+		 * @param name Ime razreda.
+		 * @return Indeks konstante.
+		 */
+		int cls(final String name) {
+			final int nameIndex = utf8(name);
+			return constant("C" + name, new byte[] { 7, (byte) (nameIndex >> 8), (byte) nameIndex });
+		}
+
+		/**
+		 * Doda ime in opisnik v zalogo konstant.
+		 *
+		 * @param name Ime.
+		 * @param desc Opisnik.
+		 * @return Indeks konstante.
+		 */
+		private int nameAndType(final String name, final String desc) {
+			return constant("N" + name + ":" + desc, pair(12, utf8(name), utf8(desc)));
+		}
+
+		/**
+		 * Doda polje v zalogo konstant.
+		 *
+		 * @param owner Ime razreda.
+		 * @param name  Ime polja.
+		 * @param desc  Opisnik polja.
+		 * @return Indeks konstante.
+		 */
+		int fieldref(final String owner, final String name, final String desc) {
+			return constant("F" + owner + "." + name + ":" + desc, pair(9, cls(owner), nameAndType(name, desc)));
+		}
+
+		/**
+		 * Doda metodo v zalogo konstant.
+		 *
+		 * @param owner Ime razreda.
+		 * @param name  Ime metode.
+		 * @param desc  Opisnik metode.
+		 * @return Indeks konstante.
+		 */
+		int methodref(final String owner, final String name, final String desc) {
+			return constant("M" + owner + "." + name + ":" + desc, pair(10, cls(owner), nameAndType(name, desc)));
+		}
+
+		/**
+		 * Doda metodo vmesnika v zalogo konstant.
+		 *
+		 * @param owner Ime vmesnika.
+		 * @param name  Ime metode.
+		 * @param desc  Opisnik metode.
+		 * @return Indeks konstante.
+		 */
+		int imethodref(final String owner, final String name, final String desc) {
+			return constant("J" + owner + "." + name + ":" + desc, pair(11, cls(owner), nameAndType(name, desc)));
+		}
+
+		/**
+		 * Doda metodo v razred.
+		 *
+		 * @param access    Dostopnost metode.
+		 * @param name      Ime metode.
+		 * @param desc      Opisnik metode.
+		 * @param maxLocals Stevilo lokalnih spremenljivk (skupaj s parametri).
+		 * @param code      Bajtna koda metode.
+		 */
+		void method(final int access, final String name, final String desc, final int maxLocals,
+				final byte[] code) {
+			final DataOutputStream out = new DataOutputStream(methods);
+			try {
+				out.writeShort(access);
+				out.writeShort(utf8(name));
+				out.writeShort(utf8(desc));
+				out.writeShort(1);
+				out.writeShort(utf8("Code"));
+				out.writeInt(12 + code.length);
+				out.writeShort(Asm.MAX_STACK);
+				out.writeShort(maxLocals);
+				out.writeInt(code.length);
+				out.write(code);
+				out.writeShort(0); // tabela izjem
+				out.writeShort(0); // atributi
+			} catch (IOException __) {
+				throw new Report.InternalError();
+			}
+			numMethods++;
+		}
+
+		/**
+		 * Vrne zapis razreda.
+		 *
+		 * @return Zapis razreda.
+		 */
+		byte[] toBytes() {
+			final int thisClass = cls(CLASS_NAME);
+			final int superClass = cls("java/lang/Object");
+			final int codeInterface = cls(CODE_NAME);
+			final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			final DataOutputStream out = new DataOutputStream(bytes);
+			try {
+				out.writeInt(0xCAFEBABE);
+				out.writeShort(0);
+				out.writeShort(49);
+				out.writeShort(poolSize);
+				out.write(pool.toByteArray());
+				out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+				out.writeShort(thisClass);
+				out.writeShort(superClass);
+				out.writeShort(1);
+				out.writeShort(codeInterface);
+				out.writeShort(0); // polja
+				out.writeShort(numMethods);
+				out.write(methods.toByteArray());
+				out.writeShort(0); // atributi
+			} catch (IOException __) {
+				throw new Report.InternalError();
+			}
+			return bytes.toByteArray();
+		}
+
+	}
+
+	/**
+	 * Zbirnik bajtne kode ene metode.
+	 */
+	private static class Asm {
+
+		/** Najvecja globina sklada JVM v prevedeni kodi. */
+		static final int MAX_STACK = 16;
+
+		@SuppressWarnings({ "doclint:missing" })
+		static final int ICONST_0 = 0x03, BIPUSH = 0x10, SIPUSH = 0x11, LDC = 0x12, LDC_W = 0x13, ILOAD = 0x15,
+				ALOAD = 0x19, ALOAD_0 = 0x2a, ISTORE = 0x36, ASTORE = 0x3a, IASTORE = 0x4f, DUP = 0x59,
+				DUP2_X1 = 0x5d, IADD = 0x60, ISUB = 0x64, LSUB = 0x65, IMUL = 0x68, IDIV = 0x6c, IREM = 0x70,
+				INEG = 0x74, I2L = 0x85, LCONST_0 = 0x09, LCMP = 0x94, IFEQ = 0x99, IFNE = 0x9a, IFGE = 0x9c,
+				IF_ICMPEQ = 0x9f, IF_ICMPNE = 0xa0, IF_ICMPLT = 0xa1, IF_ICMPGE = 0xa2, IF_ICMPGT = 0xa3,
+				IF_ICMPLE = 0xa4, GOTO = 0xa7, LOOKUPSWITCH = 0xab, IRETURN = 0xac, RETURN = 0xb1,
+				GETFIELD = 0xb4, PUTFIELD = 0xb5, INVOKEVIRTUAL = 0xb6, INVOKESPECIAL = 0xb7, INVOKESTATIC = 0xb8,
+				INVOKEINTERFACE = 0xb9, NEW = 0xbb, ATHROW = 0xbf, AALOAD = 0x32, IFNULL = 0xc6;
+
+		/** Oznaka v bajtni kodi. */
+		static class Label {
+
+			/** Polozaj oznake ali {@code -1}, ce oznaka se ni postavljena. */
+			private int pos = -1;
+
+		}
+
+		/**
+		 * Skok, katerega odmik je treba popraviti, ko je polozaj oznake znan.
+		 *
+		 * @param instrPos Polozaj ukaza.
+		 * @param fixupPos Polozaj odmika.
+		 * @param wide     Ali je odmik 32-bitni.
+		 * @param label    Ciljna oznaka.
+		 */
+		private record Fixup(int instrPos, int fixupPos, boolean wide, Label label) {
+		}
+
+		/** Zapis razreda. */
+		private final ClassWriter classWriter;
+
+		/** Bajtna koda. */
+		private final ByteArrayOutputStream code = new ByteArrayOutputStream();
+
+		/** Skoki, katerih odmike je treba popraviti. */
+		private final List<Fixup> fixups = new ArrayList<Fixup>();
+
+		/**
+		 * Ustvari zbirnik bajtne kode ene metode.
+		 *
+		 * @param classWriter Zapis razreda.
+		 */
+		Asm(final ClassWriter classWriter) {
+			this.classWriter = classWriter;
+		}
+
+		/**
+		 * Ustvari novo oznako.
+		 *
+		 * @return Oznaka.
+		 */
+		Label label() {
+			return new Label();
+		}
+
+		/**
+		 * Postavi oznako na trenutni polozaj.
+		 *
+		 * @param label Oznaka.
+		 */
+		void place(final Label label) {
+			label.pos = code.size();
+		}
+
+		/**
+		 * Zapise ukaz brez operandov.
+		 *
+		 * @param opcode Operacijska koda.
+		 */
+		void op(final int opcode) {
+			code.write(opcode);
+		}
+
+		/**
+		 * Zapise ukaz z 16-bitnim operandom.
+		 *
+		 * @param opcode  Operacijska koda.
+		 * @param operand Operand.
+		 */
+		void op(final int opcode, final int operand) {
+			code.write(opcode);
+			code.write(operand >> 8);
+			code.write(operand);
+		}
+
+		/**
+		 * Zapise ukaz invokeinterface.
+		 *
+		 * @param index    Indeks metode vmesnika v zalogi konstant.
+		 * @param numWords Stevilo besed argumentov (skupaj z objektom).
+		 */
+		void invokeinterface(final int index, final int numWords) {
+			op(INVOKEINTERFACE, index);
+			code.write(numWords);
+			code.write(0);
+		}
+
+		/**
+		 * Zapise ukaz, ki na sklad JVM prenese konstanto.
+		 *
+		 * @param value Konstanta.
+		 */
+		void iconst(final int value) {
+			if (value >= -1 && value <= 5)
+				code.write(ICONST_0 + value);
+			else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+				code.write(BIPUSH);
+				code.write(value);
+			} else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE)
+				op(SIPUSH, value);
+			else {
+				final int index = classWriter.integer(value);
+				if (index < 256) {
+					code.write(LDC);
+					code.write(index);
+				} else
+					op(LDC_W, index);
+			}
+		}
+
+		/**
+		 * Zapise ukaz, ki dostopa do lokalne spremenljivke.
+		 *
+		 * @param opcode Operacijska koda.
+		 * @param local  Indeks lokalne spremenljivke.
+		 */
+		private void local(final int opcode, final int local) {
+			code.write(opcode);
+			code.write(local);
+		}
+
+		@SuppressWarnings({ "doclint:missing" })
+		void iload(final int local) {
+			local(ILOAD, local);
+		}
+
+		@SuppressWarnings({ "doclint:missing" })
+		void istore(final int local) {
+			local(ISTORE, local);
+		}
+
+		@SuppressWarnings({ "doclint:missing" })
+		void aload(final int local) {
+			local(ALOAD, local);
+		}
+
+		@SuppressWarnings({ "doclint:missing" })
+		void astore(final int local) {
+			local(ASTORE, local);
+		}
+
+		/**
+		 * Zapise skok.
+		 *
+		 * @param opcode Operacijska koda skoka.
+		 * @param label  Ciljna oznaka.
+		 */
+		void branch(final int opcode, final Label label) {
+			fixups.add(new Fixup(code.size(), code.size() + 1, false, label));
+			op(opcode, 0);
+		}
+
+		/**
+		 * Zapise ukaz lookupswitch.
+		 *
+		 * @param dflt   Privzeta ciljna oznaka.
+		 * @param keys   Kljuci (urejeni narascajoce).
+		 * @param labels Ciljne oznake.
+		 */
+		void lookupswitch(final Label dflt, final int[] keys, final Label[] labels) {
+			final int instrPos = code.size();
+			code.write(LOOKUPSWITCH);
+			while (code.size() % 4 != 0)
+				code.write(0);
+			fixups.add(new Fixup(instrPos, code.size(), true, dflt));
+			int4(0);
+			int4(keys.length);
+			for (int k = 0; k < keys.length; k++) {
+				int4(keys[k]);
+				fixups.add(new Fixup(instrPos, code.size(), true, labels[k]));
+				int4(0);
+			}
+		}
+
+		/**
+		 * Zapise 32-bitno vrednost.
+		 *
+		 * @param value Vrednost.
+		 */
+		private void int4(final int value) {
+			code.write(value >> 24);
+			code.write(value >> 16);
+			code.write(value >> 8);
+			code.write(value);
+		}
+
+		/**
+		 * Zapise kodo, ki sprozi {@link Report.InternalError}.
+		 */
+		void internalError() {
+			op(NEW, classWriter.cls("pins24/common/Report$InternalError"));
+			op(DUP);
+			op(INVOKESPECIAL, classWriter.methodref("pins24/common/Report$InternalError", "<init>", "()V"));
+			op(ATHROW);
+		}
+
+		/**
+		 * Zakljuci metodo in popravi odmike skokov.
+		 *
+		 * @return Bajtna koda metode ali {@code null}, ce je metoda prevelika.
+		 */
+		byte[] finish() {
+			final byte[] bytes = code.toByteArray();
+			if (bytes.length > 0xFFFF)
+				return null;
+			for (final Fixup fixup : fixups) {
+				if (fixup.label.pos < 0)
+					throw new Report.InternalError();
+				final int offset = fixup.label.pos - fixup.instrPos;
+				if (fixup.wide) {
+					bytes[fixup.fixupPos] = (byte) (offset >> 24);
+					bytes[fixup.fixupPos + 1] = (byte) (offset >> 16);
+					bytes[fixup.fixupPos + 2] = (byte) (offset >> 8);
+					bytes[fixup.fixupPos + 3] = (byte) offset;
+				} else {
+					if (offset < Short.MIN_VALUE || offset > Short.MAX_VALUE)
+						return null;
+					bytes[fixup.fixupPos] = (byte) (offset >> 8);
+					bytes[fixup.fixupPos + 1] = (byte) offset;
+				}
+			}
+			return bytes;
+		}
+
+	}
+
+}
@@ -178,7 +178,53 @@ public class CodeGen {
 			public Generator() {
 			}
 
-		    /*** TODO ***/
+			/** Klici v repnem polozaju in klicni zapisi funkcij, v katerih so. */
+			private final HashMap<AST.CallExpr, Mem.Frame> tailCalls = new HashMap<AST.CallExpr, Mem.Frame>();
+
+			/**
+			 * Poisce klic v repnem polozaju funkcije (zadnji stavek funkcije, tudi
+			 * znotraj zadnjih stavkov {@code let}), ki se lahko prevede z ukazom
+			 * {@link PDM.TCAL}.
+			 * 
+			 * Klicana funkcija mora imeti telo in ne sme biti gnezdena v klicatelju (sicer
+			 * bi njena staticna povezava kazala na klicni zapis klicatelja), klicatelj
+			 * (skupaj z gnezdenimi funkcijami) pa ne sme jemati naslovov svojih
+			 * spremenljivk in parametrov, saj bi ti po klicu kazali v prevzet klicni
+			 * zapis.
+			 * 
+			 * @param funDef Definicija funkcije.
+			 * @param frame  Klicni zapis funkcije.
+			 * @return Klic v repnem polozaju ali {@code null}, ce ga ni.
+			 */
+			private AST.CallExpr tailCall(final FunDef funDef, final Mem.Frame frame) {
+				if (!Machine.optimizeTailCalls)
+					return null;
+				AST.Stmt lastStmt = funDef.stmts.getAll().getLast();
+				while (lastStmt instanceof LetStmt letStmt && letStmt.stmts.size() != 0)
+					lastStmt = letStmt.stmts.getAll().getLast();
+				if (!(lastStmt instanceof ExprStmt exprStmt) || !(exprStmt.expr instanceof AST.CallExpr callExpr))
+					return null;
+				if (!(attrAST.attrDef.get(callExpr) instanceof FunDef calleeDef) || calleeDef.stmts.size() == 0)
+					return null;
+				if (attrAST.attrFrame.get(calleeDef).depth > frame.depth)
+					return null;
+				final boolean[] addressTaken = { false };
+				funDef.stmts.accept(new AST.FullVisitor<Object, Object>() {
+					@Override
+					public Object visit(final UnExpr unExpr, final Object arg) {
+						if (unExpr.oper == UnExpr.Oper.MEMADDR && unExpr.expr instanceof AST.VarExpr varExpr) {
+							final AST.Def def = attrAST.attrDef.get(varExpr);
+							Mem.Access access = attrAST.attrVarAccess.get(def);
+							if (access == null)
+								access = attrAST.attrParAccess.get(def);
+							if (access instanceof Mem.RelAccess relAccess && relAccess.depth == frame.depth)
+								addressTaken[0] = true;
+						}
+						return AST.FullVisitor.super.visit(unExpr, arg);
+					}
+				}, null);
+				return addressTaken[0] ? null : callExpr;
+			}
 			
 			@Override
 			public List<PDM.CodeInstr> visit(final Nodes<? extends AST.Node> nodes, final Mem.Frame arg) {
@@ -198,6 +244,9 @@ public class CodeGen {
 			public List<PDM.CodeInstr> visit(final FunDef funDef, final Mem.Frame arg) {
 				if(funDef.stmts.size() == 0) return new ArrayList<CodeInstr>();
 				Mem.Frame frame = attrAST.attrFrame.get(funDef);
+				final AST.CallExpr tailCall = tailCall(funDef, frame);
+				if (tailCall != null)
+					tailCalls.put(tailCall, frame);
 				
 				List<PDM.CodeInstr> code = new ArrayList<PDM.CodeInstr>();
 				code.add(new PDM.LABEL(frame.name,null));
@@ -230,7 +279,11 @@ public class CodeGen {
 				code.add(new PDM.NAME(funDefFrame.name, null));
 
 				//call
-				code.add(new PDM.CALL(arg, null));
+				final Mem.Frame tailFrame = tailCalls.get(callExpr);
+				if (tailFrame != null)
+					code.add(new PDM.TCAL(funDefFrame.parsSize, tailFrame.parsSize, funDefFrame, null));
+				else
+					code.add(new PDM.CALL(arg, null));
 
 				attrAST.attrCode.put(callExpr, code);
 				return code;
@@ -0,0 +1,357 @@
+package pins24.phase;
+
+import java.util.*;
+import pins24.common.*;
+
+/**
+ * Optimizacija kode.
+ *
+ * Kukalna optimizacija (angl. peephole optimization) seznama ukazov, ki
+ * predstavljajo kodo programa:
+ * <ol>
+ * <li>izracun konstantnih izrazov ({@code PUSH a; PUSH b; OPER op} v
+ * {@code PUSH c}, {@code PUSH a; OPER NEG/NOT} v {@code PUSH c}, zdruzevanje
+ * zaporednih pristevanj konstant in odstranitev {@code PUSH 0; OPER ADD});</li>
+ * <li>odstranitev {@code PUSH 0; POPN};</li>
+ * <li>odstranitev {@code NAME L; UJMP}, ki mu takoj sledi oznaka {@code L};</li>
+ * <li>skoki na oznake, ki jim sledi le brezpogojni skok, se preusmerijo na
+ * koncni cilj;</li>
+ * <li>dostopi do spremenljivk in parametrov v klicnih zapisih se nadomestijo z
+ * ukazoma {@link PDM.LOADFP} in {@link PDM.SAVEFP}.</li>
+ * </ol>
+ */
+public class CodeOpt {
+
+	@SuppressWarnings({ "doclint:missing" })
+	public CodeOpt() {
+		throw new Report.InternalError();
+	}
+
+	/**
+	 * Optimizira seznam ukazov, ki predstavljajo kodo programa.
+	 *
+	 * @param codeSegment Seznam ukazov, ki predstavljajo kodo programa.
+	 * @return Optimiziran seznam ukazov, ki predstavljajo kodo programa.
+	 */
+	public static List<PDM.CodeInstr> optimize(final List<PDM.CodeInstr> codeSegment) {
+		List<PDM.CodeInstr> code = codeSegment;
+		while (true) {
+			final int size = code.size();
+			code = peephole(threadJumps(code));
+			if (code.size() == size)
+				break;
+		}
+		return Collections.unmodifiableList(superInstrs(code));
+	}
+
+	/**
+	 * Presteje ukaze v seznamu ukazov (oznake se ne stejejo).
+	 *
+	 * @param code Seznam ukazov.
+	 * @return Stevilo ukazov.
+	 */
+	public static int numInstrs(final List<PDM.CodeInstr> code) {
+		int numInstrs = 0;
+		for (final PDM.CodeInstr instr : code)
+			if (!(instr instanceof PDM.LABEL))
+				numInstrs++;
+		return numInstrs;
+	}
+
+	// --- KUKALNA OPTIMIZACIJA ---
+
+	/**
+	 * Izvede izracun konstantnih izrazov in odstrani odvecne ukaze.
+	 *
+	 * Ker se ukazi obravnavajo glede na zadnje ukaze ze optimizirane kode, se
+	 * verige konstantnih izrazov izracunajo v enem prehodu; oznaka med ukazi
+	 * prepreci optimizacijo.
+	 *
+	 * @param code Seznam ukazov.
+	 * @return Optimiziran seznam ukazov.
+	 */
+	private static List<PDM.CodeInstr> peephole(final List<PDM.CodeInstr> code) {
+		final ArrayList<PDM.CodeInstr> optCode = new ArrayList<PDM.CodeInstr>();
+		for (final PDM.CodeInstr instr : code) {
+			switch (instr) {
+			case PDM.OPER oper -> {
+				switch (oper.oper) {
+				case NOT, NEG -> {
+					if (last(optCode, 0) instanceof PDM.PUSH c) {
+						optCode.removeLast();
+						optCode.add(new PDM.PUSH(oper.oper == PDM.OPER.Oper.NOT ? (c.intc == 0 ? 1 : 0) : -c.intc,
+								oper.debugLocation));
+						continue;
+					}
+				}
+				default -> {
+					if ((last(optCode, 1) instanceof PDM.PUSH fst) && (last(optCode, 0) instanceof PDM.PUSH snd)) {
+						if (((oper.oper == PDM.OPER.Oper.DIV) || (oper.oper == PDM.OPER.Oper.MOD)) && (snd.intc == 0))
+							break; // deljenje z 0 se izvede sele med izvajanjem
+						optCode.removeLast();
+						optCode.removeLast();
+						optCode.add(new PDM.PUSH(oper(oper.oper, fst.intc, snd.intc), oper.debugLocation));
+						continue;
+					}
+					if (((oper.oper == PDM.OPER.Oper.ADD) || (oper.oper == PDM.OPER.Oper.SUB))
+							&& (last(optCode, 0) instanceof PDM.PUSH snd)) {
+						int value = oper.oper == PDM.OPER.Oper.ADD ? snd.intc : -snd.intc;
+						optCode.removeLast();
+						if ((last(optCode, 1) instanceof PDM.PUSH fst) && (last(optCode, 0) instanceof PDM.OPER fstOper)
+								&& ((fstOper.oper == PDM.OPER.Oper.ADD) || (fstOper.oper == PDM.OPER.Oper.SUB))) {
+							value += fstOper.oper == PDM.OPER.Oper.ADD ? fst.intc : -fst.intc;
+							optCode.removeLast();
+							optCode.removeLast();
+						}
+						if (value != 0) {
+							optCode.add(new PDM.PUSH(value, snd.debugLocation));
+							optCode.add(new PDM.OPER(PDM.OPER.Oper.ADD, oper.debugLocation));
+						}
+						continue;
+					}
+				}
+				}
+			}
+			case PDM.POPN popn -> {
+				if ((last(optCode, 0) instanceof PDM.PUSH n) && (n.intc == 0)) {
+					optCode.removeLast();
+					continue;
+				}
+			}
+			default -> {
+			}
+			}
+			optCode.add(instr);
+		}
+		return optCode;
+	}
+
+	/**
+	 * Vrne enega izmed zadnjih ukazov seznama.
+	 *
+	 * @param code   Seznam ukazov.
+	 * @param offset Odmik od konca seznama ({@code 0} za zadnji ukaz).
+	 * @return Ukaz ali {@code null}, ce ga ni.
+	 */
+	private static PDM.CodeInstr last(final List<PDM.CodeInstr> code, final int offset) {
+		return code.size() > offset ? code.get(code.size() - 1 - offset) : null;
+	}
+
+	/**
+	 * Izracuna vrednost binarne operacije nad konstantama.
+	 *
+	 * @param oper Operacija.
+	 * @param fst  Vrednost prvega operanda.
+	 * @param snd  Vrednost drugega operanda.
+	 * @return Vrednost operacije.
+	 */
+	private static int oper(final PDM.OPER.Oper oper, final int fst, final int snd) {
+		return switch (oper) {
+		case OR -> (fst != 0) || (snd != 0) ? 1 : 0;
+		case AND -> (fst != 0) && (snd != 0) ? 1 : 0;
+		case EQU -> fst == snd ? 1 : 0;
+		case NEQ -> fst != snd ? 1 : 0;
+		case GTH -> fst > snd ? 1 : 0;
+		case LTH -> fst < snd ? 1 : 0;
+		case GEQ -> fst >= snd ? 1 : 0;
+		case LEQ -> fst <= snd ? 1 : 0;
+		case ADD -> fst + snd;
+		case SUB -> fst - snd;
+		case MUL -> fst * snd;
+		case DIV -> fst / snd;
+		case MOD -> fst % snd;
+		default -> throw new Report.InternalError();
+		};
+	}
+
+	// --- SKOKI ---
+
+	/**
+	 * Preusmeri skoke na oznake, ki jim sledi le brezpogojni skok, in odstrani
+	 * brezpogojne skoke na oznako, ki takoj sledi skoku.
+	 *
+	 * @param code Seznam ukazov.
+	 * @return Optimiziran seznam ukazov.
+	 */
+	private static List<PDM.CodeInstr> threadJumps(final List<PDM.CodeInstr> code) {
+		// oznake, ki jim sledi le brezpogojni skok:
+		final HashMap<String, String> jumpToJump = new HashMap<String, String>();
+		for (int i = 0; i < code.size(); i++) {
+			if (!(code.get(i) instanceof PDM.LABEL label))
+				continue;
+			int j = i + 1;
+			while (j < code.size() && code.get(j) instanceof PDM.LABEL)
+				j++;
+			if (j + 1 < code.size() && (code.get(j) instanceof PDM.NAME name) && (code.get(j + 1) instanceof PDM.UJMP))
+				jumpToJump.put(label.name, name.name);
+		}
+
+		final ArrayList<PDM.CodeInstr> optCode = new ArrayList<PDM.CodeInstr>();
+		for (int i = 0; i < code.size(); i++) {
+			final PDM.CodeInstr instr = code.get(i);
+			if (!(instr instanceof PDM.NAME name) || !isJumpTarget(code, i)) {
+				optCode.add(instr);
+				continue;
+			}
+			final String target = finalTarget(jumpToJump, name.name);
+			if ((code.get(i + 1) instanceof PDM.UJMP) && labelFollows(code, i + 2, target)) {
+				i++;
+				continue;
+			}
+			optCode.add(target.equals(name.name) ? name : new PDM.NAME(target, name.debugLocation));
+		}
+		return optCode;
+	}
+
+	/**
+	 * Ugotovi, ali je ukaz {@code NAME} na danem mestu cilj skoka.
+	 *
+	 * @param code Seznam ukazov.
+	 * @param i    Indeks ukaza {@code NAME}.
+	 * @return Ali je ime oznake na danem mestu cilj skoka.
+	 */
+	private static boolean isJumpTarget(final List<PDM.CodeInstr> code, final int i) {
+		if (i + 1 < code.size() && ((code.get(i + 1) instanceof PDM.UJMP) || (code.get(i + 1) instanceof PDM.CJMP)))
+			return true;
+		return i + 2 < code.size() && (code.get(i + 1) instanceof PDM.NAME) && (code.get(i + 2) instanceof PDM.CJMP);
+	}
+
+	/**
+	 * Vrne koncni cilj verige brezpogojnih skokov.
+	 *
+	 * @param jumpToJump Preslikava oznak, ki jim sledi le brezpogojni skok, v cilj
+	 *                   tega skoka.
+	 * @param label      Ime zacetne oznake.
+	 * @return Ime koncne oznake.
+	 */
+	private static String finalTarget(final HashMap<String, String> jumpToJump, final String label) {
+		final HashSet<String> visited = new HashSet<String>();
+		String target = label;
+		while (jumpToJump.containsKey(target)) {
+			if (!visited.add(target))
+				return label; // neskoncna zanka
+			target = jumpToJump.get(target);
+		}
+		return target;
+	}
+
+	/**
+	 * Ugotovi, ali je oznaka med oznakami, ki se zacnejo na danem mestu.
+	 *
+	 * @param code  Seznam ukazov.
+	 * @param i     Indeks prve oznake.
+	 * @param label Ime oznake.
+	 * @return Ali je oznaka med oznakami na danem mestu.
+	 */
+	private static boolean labelFollows(final List<PDM.CodeInstr> code, int i, final String label) {
+		while (i < code.size() && code.get(i) instanceof PDM.LABEL l) {
+			if (l.name.equals(label))
+				return true;
+			i++;
+		}
+		return false;
+	}
+
+	// --- SESTAVLJENI UKAZI ---
+
+	/**
+	 * Nadomesti zaporedja {@code REGN.FP; LOAD...; PUSH offset; OPER.ADD; LOAD}
+	 * in {@code REGN.FP; LOAD...; PUSH offset; OPER.ADD; SAVE} z ukazoma
+	 * {@link PDM.LOADFP} in {@link PDM.SAVEFP}. Zaporedje {@code REGN.FP; LOAD...}
+	 * brez pristevanja odmika (npr. pri prenosu staticne povezave) se nadomesti z
+	 * ukazom {@link PDM.LOADFP} z odmikom {@code 0}.
+	 *
+	 * @param code Seznam ukazov.
+	 * @return Seznam ukazov s sestavljenimi ukazi.
+	 */
+	private static List<PDM.CodeInstr> superInstrs(final List<PDM.CodeInstr> code) {
+		final ArrayList<PDM.CodeInstr> optCode = new ArrayList<PDM.CodeInstr>();
+		for (int i = 0; i < code.size(); i++) {
+			final PDM.CodeInstr instr = code.get(i);
+			if (!(instr instanceof PDM.REGN regn) || (regn.regn != PDM.REGN.Reg.FP)) {
+				optCode.add(instr);
+				continue;
+			}
+			int hops = 0;
+			while (i + 1 + hops < code.size() && code.get(i + 1 + hops) instanceof PDM.LOAD)
+				hops++;
+			final int j = i + 1 + hops;
+			if (j + 2 < code.size() && (code.get(j) instanceof PDM.PUSH offset)
+					&& (code.get(j + 1) instanceof PDM.OPER oper) && (oper.oper == PDM.OPER.Oper.ADD)) {
+				if (code.get(j + 2) instanceof PDM.LOAD load) {
+					optCode.add(new PDM.LOADFP(hops, offset.intc, load.debugLocation));
+					i = j + 2;
+					continue;
+				}
+				if (code.get(j + 2) instanceof PDM.SAVE save) {
+					optCode.add(new PDM.SAVEFP(hops, offset.intc, save.debugLocation));
+					i = j + 2;
+					continue;
+				}
+			}
+			if (hops > 0) {
+				optCode.add(new PDM.LOADFP(hops - 1, 0, ((PDM.LOAD) code.get(j - 1)).debugLocation));
+				i = j - 1;
+				continue;
+			}
+			optCode.add(instr);
+		}
+		return optCode;
+	}
+
+	// --- ZAGON ---
+
+	/**
+	 * Zagon optimizacije kode kot samostojnega programa.
+	 *
+	 * @param cmdLineArgs Argumenti v ukazni vrstici.
+	 */
+	public static void main(final String[] cmdLineArgs) {
+		System.out.println("This is PINS'24 compiler (code optimization):");
+
+		try {
+			if (cmdLineArgs.length == 0)
+				throw new Report.Error("No source file specified in the command line.");
+			if (cmdLineArgs.length > 1)
+				Report.warning("Unused arguments in the command line.");
+
+			try (SynAn synAn = new SynAn(cmdLineArgs[0])) {
+				// abstraktna sintaksa:
+				final Abstr.AttrAST abstrAttrAST = Abstr.constructAST(synAn);
+				// semanticna analiza:
+				final SemAn.AttrAST semanAttrAST = SemAn.analyze(abstrAttrAST);
+				// pomnilniska predstavitev:
+				final Memory.AttrAST memoryAttrAST = Memory.organize(semanAttrAST);
+				// generiranje kode:
+				final CodeGen.AttrAST codegenAttrAST = CodeGen.generate(memoryAttrAST);
+
+				final List<PDM.CodeInstr> codeSegment = (new CodeGen.CodeSegmentGenerator(codegenAttrAST))
+						.codeSegment();
+				// optimizacija kode:
+				final List<PDM.CodeInstr> optCodeSegment = optimize(codeSegment);
+
+				int addr = 0;
+				System.out.println("\n\033[1mCODE SEGMENT:\033[0m");
+				for (final PDM.CodeInstr instr : optCodeSegment) {
+					System.out.printf("%8d [%s] %s\n", addr, instr.size(),
+							(instr instanceof PDM.LABEL ? "" : "  ") + instr.toString());
+					addr += instr.size();
+				}
+				System.out.println();
+				Report.info("Code optimization: " + numInstrs(codeSegment) + " -> " + numInstrs(optCodeSegment)
+						+ " instructions.");
+			}
+
+			// Upajmo, da kdaj pridemo to te tocke.
+			// A zavedajmo se sledecega:
+			// 1. Prevod je zaradi napak v programu lahko napacen :-o
+			// 2. Izvorni program se zdalec ni tisto, kar je programer hotel, da bi bil ;-)
+			Report.info("Done.");
+		} catch (Report.Error error) {
+			// Izpis opisa napake.
+			System.err.println(error.getMessage());
+			System.exit(1);
+		}
+	}
+
+}
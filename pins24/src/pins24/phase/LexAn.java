@@ -1,6 +1,11 @@
 package pins24.phase;
 
 import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.util.*;
 import pins24.common.*;
 import pins24.common.Token.Symbol;
 
@@ -9,92 +14,239 @@ import pins24.common.Token.Symbol;
  */
 public class LexAn implements AutoCloseable {
 
-	/** Izvorna datoteka. */
+	/** Izvorna datoteka (ali {@code null}, ce je izvorna datoteka preslikana). */
 	private final Reader srcFile;
 
 	/**
-	 * Ustvari nov leksikalni analizator.
+	 * Izvorna datoteka, preslikana v pomnilnik (ali {@code null}, ce se izvorna
+	 * datoteka bere).
+	 */
+	private final ByteBuffer srcBytes;
+
+	/**
+	 * Medpomnilnik z znaki izvorne datoteke.
+	 * 
+	 * Izvorna datoteka se v medpomnilnik bere v vecjih kosih (glej {@link fill}).
+	 * V medpomnilniku so vedno vsi znaki od zacetka trenutnega leksikalnega
+	 * simbola naprej, zato je znakovno predstavitev simbola mogoce dobiti kar iz
+	 * medpomnilnika z indeksoma zacetka in konca simbola.
+	 */
+	private char[] srcChars = new char[1 << 16];
+
+	/** Odmik prvega znaka v medpomnilniku od zacetka izvorne datoteke. */
+	private int srcBase = 0;
+
+	/** Stevilo prebranih znakov v medpomnilniku. */
+	private int srcLength = 0;
+
+	/** Indeks naslednjega se ne pregledanega znaka v medpomnilniku. */
+	private int srcNext = 0;
+
+	/** Indeks prvega znaka trenutnega leksikalnega simbola v medpomnilniku. */
+	private int srcKeep = 0;
+
+	/** Tabela imen in kljucnih besed. */
+	private final Names names = new Names();
+
+	/**
+	 * Ustvari nov leksikalni analizator, ki izvorno datoteko preslika v
+	 * pomnilnik.
 	 * 
 	 * @param srcFileName Ime izvorne datoteke.
 	 */
 	public LexAn(final String srcFileName) {
+		this(srcFileName, true);
+	}
+
+	/**
+	 * Ustvari nov leksikalni analizator.
+	 * 
+	 * Izvorna datoteka se bodisi preslika v pomnilnik bodisi bere z razlagalnikom
+	 * znakov. V obeh primerih se vsak bajt izvorne datoteke razlozi kot en znak
+	 * nabora ISO-8859-1, zato sta rezultat in lokacije leksikalnih simbolov
+	 * neodvisni od nacina branja.
+	 * 
+	 * @param srcFileName Ime izvorne datoteke.
+	 * @param mapSource   Ali se izvorna datoteka preslika v pomnilnik.
+	 */
+	public LexAn(final String srcFileName, final boolean mapSource) {
 		try {
-			srcFile = new BufferedReader(new InputStreamReader(new FileInputStream(new File(srcFileName))));
+			if (mapSource) {
+				srcFile = null;
+				try (FileChannel channel = FileChannel.open(Paths.get(srcFileName), StandardOpenOption.READ)) {
+					if (channel.size() > Integer.MAX_VALUE)
+						throw new Report.Error("Source file '" + srcFileName + "' is too large.");
+					srcBytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+				}
+			} else {
+				srcFile = new InputStreamReader(new FileInputStream(new File(srcFileName)),
+						StandardCharsets.ISO_8859_1);
+				srcBytes = null;
+			}
+			lines.add(-1, 0, 0); // Zacetni znak '\n' (glej {@link nextChar}).
 			nextChar(); // Pripravi prvi znak izvorne datoteke (glej {@link nextChar}).
-		} catch (FileNotFoundException __) {
+		} catch (FileNotFoundException | NoSuchFileException __) {
 			throw new Report.Error("Source file '" + srcFileName + "' not found.");
+		} catch (IOException __) {
+			throw new Report.Error("Cannot read source file.");
 		}
 	}
 
 	@Override
 	public void close() {
 		try {
-			srcFile.close();
+			if (srcFile != null)
+				srcFile.close();
 		} catch (IOException __) {
 			throw new Report.Error("Cannot close source file.");
 		}
 	}
 
+	/**
+	 * Prebere naslednji kos izvorne datoteke v medpomnilnik.
+	 * 
+	 * Znaki pred zacetkom trenutnega leksikalnega simbola se iz medpomnilnika
+	 * zavrzejo, ce pa je medpomnilnik se vedno poln (leksikalni simbol je daljsi od
+	 * medpomnilnika), se medpomnilnik poveca. Iz preslikane izvorne datoteke se
+	 * bajti prepisejo v medpomnilnik brez razlagalnika znakov (kot znaki nabora
+	 * ISO-8859-1).
+	 * 
+	 * @return {@code true}, ce je bil prebran vsaj en znak, ali {@code false} ob
+	 *         koncu datoteke.
+	 */
+	private boolean fill() {
+		try {
+			if (srcKeep > 0) {
+				System.arraycopy(srcChars, srcKeep, srcChars, 0, srcLength - srcKeep);
+				srcBase += srcKeep;
+				srcLength -= srcKeep;
+				srcNext -= srcKeep;
+				srcKeep = 0;
+			}
+			if (srcLength == srcChars.length)
+				srcChars = Arrays.copyOf(srcChars, 2 * srcChars.length);
+			if (srcBytes != null) {
+				final int numBytes = Math.min(srcChars.length - srcLength, srcBytes.remaining());
+				if (numBytes == 0)
+					return false;
+				final int srcPos = srcBytes.position();
+				for (int index = 0; index < numBytes; index++)
+					srcChars[srcLength + index] = (char) (srcBytes.get(srcPos + index) & 0xFF);
+				srcBytes.position(srcPos + numBytes);
+				srcLength += numBytes;
+				return true;
+			}
+			final int numChars = srcFile.read(srcChars, srcLength, srcChars.length - srcLength);
+			if (numChars <= 0)
+				return false;
+			srcLength += numChars;
+			return true;
+		} catch (IOException __) {
+			throw new Report.Error("Cannot read source file.");
+		}
+	}
+
+	/**
+	 * Vrne naslednji znak izvorne datoteke iz medpomnilnika.
+	 * 
+	 * @return Naslednji znak ali {@code -1} ob koncu datoteke.
+	 */
+	private int read() {
+		if (srcNext == srcLength && !fill())
+			return -1;
+		return srcChars[srcNext++];
+	}
+
+	/**
+	 * Vrne indeks trenutnega znaka (glej {@link nextChar}) v medpomnilniku.
+	 * 
+	 * @return Indeks trenutnega znaka v medpomnilniku.
+	 */
+	private int buffCharIndex() {
+		return buffChar == -1 ? srcNext : srcNext - 1;
+	}
+
+	/**
+	 * Vrne znakovno predstavitev dela izvorne datoteke v medpomnilniku.
+	 * 
+	 * @param beg Indeks prvega znaka v medpomnilniku.
+	 * @param end Indeks prvega znaka za koncem v medpomnilniku.
+	 * @return Znakovna predstavitev.
+	 */
+	private String text(final int beg, final int end) {
+		return new String(srcChars, beg, end - beg);
+	}
+
 	/** Trenutni znak izvorne datoteke (glej {@link nextChar}). */
 	private int buffChar = '\n';
 
 	/** Vrstica trenutnega znaka izvorne datoteke (glej {@link nextChar}). */
 	private int buffCharLine = 0;
 
-	/** Stolpec trenutnega znaka izvorne datoteke (glej {@link nextChar}). */
-	private int buffCharColumn = 0;
+	/**
+	 * Tabela vrstic izvorne datoteke, v katero se vpisejo zacetki vrstic in znaki
+	 * za tabulatorji.
+	 */
+	private final Report.Lines lines = new Report.Lines();
+
+	/**
+	 * Vrne stolpec trenutnega znaka izvorne datoteke.
+	 * 
+	 * Stolpec se ne steje ob branju vsakega znaka, temvec se izracuna iz odmika
+	 * znaka od zacetka izvorne datoteke in tabele vrstic: med zadnjim znakom v
+	 * tabeli vrstic in trenutnim znakom so le znaki brez posebnosti.
+	 * 
+	 * @return Stolpec trenutnega znaka izvorne datoteke.
+	 */
+	private int buffCharColumn() {
+		return lines.column(srcBase + buffCharIndex());
+	}
 
 	/**
 	 * Prebere naslednji znak izvorne datoteke.
 	 * 
-	 * Izvorno datoteko beremo znak po znak. Trenutni znak izvorne datoteke je
-	 * shranjen v spremenljivki {@link buffChar}, vrstica in stolpec trenutnega
-	 * znaka izvorne datoteke sta shranjena v spremenljivkah {@link buffCharLine} in
-	 * {@link buffCharColumn}.
+	 * Izvorno datoteko pregledujemo znak po znak (glej {@link read}). Trenutni
+	 * znak izvorne datoteke je shranjen v spremenljivki {@link buffChar}, vrstica
+	 * trenutnega znaka izvorne datoteke je shranjena v spremenljivki
+	 * {@link buffCharLine}, stolpec pa vrne metoda {@link buffCharColumn}.
 	 * 
-	 * Zacetne vrednosti {@link buffChar}, {@link buffCharLine} in
-	 * {@link buffCharColumn} so {@code '\n'}, {@code 0} in {@code 0}: branje prvega
-	 * znaka izvorne datoteke bo na osnovi vrednosti {@code '\n'} spremenljivke
-	 * {@link buffChar} prvemu znaku izvorne datoteke priredilo vrstico 1 in stolpec
-	 * 1.
+	 * Zacetni vrednosti {@link buffChar} in {@link buffCharLine} sta {@code '\n'}
+	 * in {@code 0}: branje prvega znaka izvorne datoteke bo na osnovi vrednosti
+	 * {@code '\n'} spremenljivke {@link buffChar} prvemu znaku izvorne datoteke
+	 * priredilo vrstico 1 in stolpec 1.
 	 * 
 	 * Pri branju izvorne datoteke se predpostavlja, da je v spremenljivki
-	 * {@link buffChar} ves "cas veljaven znak. Zunaj metode {@link nextChar} so vse
-	 * spremenljivke {@link buffChar}, {@link buffCharLine} in
-	 * {@link buffCharColumn} namenjene le branju.
+	 * {@link buffChar} ves "cas veljaven znak. Zunaj metode {@link nextChar} sta
+	 * spremenljivki {@link buffChar} in {@link buffCharLine} namenjeni le branju.
 	 * 
 	 * Vrednost {@code -1} v spremenljivki {@link buffChar} pomeni konec datoteke
-	 * (vrednosti spremenljivk {@link buffCharLine} in {@link buffCharColumn} pa
-	 * nista ve"c veljavni).
+	 * (vrstica in stolpec pa nista ve"c veljavna).
 	 */
 	private void nextChar() {
-		try {
-			switch (buffChar) {
-			case -2: // Noben znak "se ni bil prebran.
-				buffChar = srcFile.read();
-				buffCharLine = buffChar == -1 ? 0 : 1;
-				buffCharColumn = buffChar == -1 ? 0 : 1;
-				return;
-			case -1: // Konec datoteke je bil "ze viden.
-				return;
-			case '\n': // Prejsnji znak je koncal vrstico, zacne se nova vrstica.
-				buffChar = srcFile.read();
-				buffCharLine = buffChar == -1 ? buffCharLine : buffCharLine + 1;
-				buffCharColumn = buffChar == -1 ? buffCharColumn : 1;
-				return;
-			case '\t': // Prejsnji znak je tabulator, ta znak je morda potisnjen v desno.
-				buffChar = srcFile.read();
-				while (buffCharColumn % 8 != 0)
-					buffCharColumn += 1;
-				buffCharColumn += 1;
-				return;
-			default: // Prejsnji znak je brez posebnosti.
-				buffChar = srcFile.read();
-				buffCharColumn += 1;
-				return;
-			}
-		} catch (IOException __) {
-			throw new Report.Error("Cannot read source file.");
+		switch (buffChar) {
+		case -2: // Noben znak "se ni bil prebran.
+			buffChar = read();
+			buffCharLine = buffChar == -1 ? 0 : 1;
+			lines.add(srcBase + buffCharIndex(), buffCharLine, buffChar == -1 ? 0 : 1);
+			return;
+		case -1: // Konec datoteke je bil "ze viden.
+			return;
+		case '\n': { // Prejsnji znak je koncal vrstico, zacne se nova vrstica.
+			final int column = buffCharColumn();
+			buffChar = read();
+			buffCharLine = buffChar == -1 ? buffCharLine : buffCharLine + 1;
+			lines.add(srcBase + buffCharIndex(), buffCharLine, buffChar == -1 ? column : 1);
+			return;
+		}
+		case '\t': { // Prejsnji znak je tabulator, ta znak je morda potisnjen v desno.
+			final int column = buffCharColumn();
+			buffChar = read();
+			lines.add(srcBase + buffCharIndex(), buffCharLine, (column + 7) / 8 * 8 + 1);
+			return;
+		}
+		default: // Prejsnji znak je brez posebnosti.
+			buffChar = read();
+			return;
 		}
 	}
 
@@ -107,19 +259,28 @@ public class LexAn implements AutoCloseable {
 	 */
 	private Token buffToken = null;
 
+	/**
+	 * Ustvari leksikalni simbol, ki se konca z znakom v medpomnilniku.
+	 * 
+	 * @param endIndex Indeks zadnjega znaka simbola v medpomnilniku.
+	 * @param length   Dolzina simbola v stolpcih.
+	 * @param symbol   Vrsta simbola.
+	 * @param lexeme   Znakovna predstavitev simbola.
+	 * @return Leksikalni simbol.
+	 */
+	private Token token(final int endIndex, final int length, final Symbol symbol, final String lexeme) {
+		return new Token(lines, srcBase + endIndex, length, symbol, lexeme);
+	}
+
 	/**
 	 * Prebere naslednji leksikalni simbol, ki je nato dostopen preko metod
 	 * {@link peekToken} in {@link takeToken}.
 	 */
-	private String ime(){	//meni pomozna funkcija za dobivanje imen spremenljivk
-		String tmp = "";
-		tmp += (char) buffChar;
+	private void ime(){	//meni pomozna funkcija za dobivanje imen spremenljivk
 		nextChar();
 		while(buffChar >= 'a' && buffChar <= 'z' || buffChar >= 'A' && buffChar <= 'Z' || buffChar == '_' || buffChar >= '0' && buffChar <= '9'){
-			tmp += (char) buffChar;
 			nextChar();
 		}
-		return tmp;
 	}
 	private String znak(){ //rabm dokoncat, gledas za ' \ pa znak 10 alpa 13
 		nextChar();
@@ -127,61 +288,50 @@ public class LexAn implements AutoCloseable {
 			nextChar();
 			if(buffChar == '\\' || buffChar == '\'' || buffChar == 'n' || (buffChar >= 'A' && buffChar <= 'F' || buffChar >= '0' && buffChar <= '9')){	//je veljaven backslash
 				if(buffChar >= 'A' && buffChar <= 'F' || buffChar >= '0' && buffChar <= '9'){
-					String znak = "\'\\" + (char) buffChar;
 					nextChar();
-					if(buffChar >= 'A' && buffChar <= 'F' || buffChar >= '0' && buffChar <= '9'){
-						znak += (char) buffChar;
+					if(!(buffChar >= 'A' && buffChar <= 'F' || buffChar >= '0' && buffChar <= '9')){
+						throw new Report.Error(new Report.Location(buffCharLine, buffCharColumn()-3, buffCharLine, buffCharColumn()), "Napacno escapan char!");
 					}
-					else throw new Report.Error(new Report.Location(buffCharLine, buffCharColumn-3, buffCharLine, buffCharColumn), "Napacno escapan char!");
-					znak += "\'";
-					return znak;
+					return text(srcKeep, buffCharIndex() + 1) + "\'";
 				}
-				char tmp = (char) buffChar;
 				nextChar();
 				if(buffChar != '\''){
-					throw new Report.Error(new Report.Location(buffCharLine, buffCharColumn-3, buffCharLine, buffCharColumn+1), "Char more biti dolzine 1."); //se pravilno zakljuci
+					throw new Report.Error(new Report.Location(buffCharLine, buffCharColumn()-3, buffCharLine, buffCharColumn()+1), "Char more biti dolzine 1."); //se pravilno zakljuci
 				}
-				return "'\\" + tmp + "'";
+				return text(srcKeep, buffCharIndex() + 1);
 			}
-			throw new Report.Error(new Report.Location(buffCharLine, buffCharColumn-2, buffCharLine, buffCharColumn+1), "Napacno escapan char!");
+			throw new Report.Error(new Report.Location(buffCharLine, buffCharColumn()-2, buffCharLine, buffCharColumn()+1), "Napacno escapan char!");
 		}
 		if(buffChar >= 32 && buffChar <= 126){
-			char tmp = (char) buffChar;
 			nextChar();
 			if(buffChar == '\''){
-				return "'" + tmp + (char) buffChar;
+				return text(srcKeep, buffCharIndex() + 1);
 			}
-			throw new Report.Error(new Report.Location(buffCharLine, buffCharColumn-2, buffCharLine, buffCharColumn+1), "Char more biti dolzine 1.");
+			throw new Report.Error(new Report.Location(buffCharLine, buffCharColumn()-2, buffCharLine, buffCharColumn()+1), "Char more biti dolzine 1.");
 		}
-		throw new Report.Error(new Report.Location(buffCharLine, buffCharColumn-1, buffCharLine, buffCharColumn), "Neprepoznan znak.");
+		throw new Report.Error(new Report.Location(buffCharLine, buffCharColumn()-1, buffCharLine, buffCharColumn()), "Neprepoznan znak.");
 	}
 	private String niz(){	//meni pomozna funkcija za dobivanje stringov, da nimam spet spagetov
-		String tmp = "\"";
 		nextChar();
 		while(buffChar != '"'){
 			if(buffChar >= 32 && buffChar <= 126){
 				if(buffChar == '\\'){
-					tmp += (char) buffChar;
 					nextChar();
 					if(buffChar != '"' && buffChar != '\\' && buffChar != 'n' && !(buffChar >= 'A' && buffChar <= 'F' || buffChar >= '0' && buffChar <= '9')){
-						throw new Report.Error(new Report.Location(buffCharLine, buffCharColumn-tmp.length(), buffCharLine, buffCharColumn), "Napacno escapan string!");
+						throw new Report.Error(new Report.Location(buffCharLine, buffCharColumn()-(buffCharIndex()-srcKeep), buffCharLine, buffCharColumn()), "Napacno escapan string!");
 					}
 					if(buffChar >= 'A' && buffChar <= 'F' || buffChar >= '0' && buffChar <= '9'){
-						tmp += (char) buffChar;
 						nextChar();
-						if(buffChar >= 'A' && buffChar <= 'F' || buffChar >= '0' && buffChar <= '9'){
-							tmp += (char) buffChar;
+						if(!(buffChar >= 'A' && buffChar <= 'F' || buffChar >= '0' && buffChar <= '9')){
+							throw new Report.Error(new Report.Location(buffCharLine, buffCharColumn()-(buffCharIndex()-srcKeep), buffCharLine, buffCharColumn()), "Napacno escapan string!");
 						}
-						else throw new Report.Error(new Report.Location(buffCharLine, buffCharColumn-tmp.length(), buffCharLine, buffCharColumn), "Napacno escapan string!");
 					}
-					else tmp += (char) buffChar;
 				}
-				else tmp += (char) buffChar;
 			}
-			else throw new Report.Error(new Report.Location(buffCharLine, buffCharColumn-tmp.length(), buffCharLine, buffCharColumn), "Neprepoznan znak v stringu.");
+			else throw new Report.Error(new Report.Location(buffCharLine, buffCharColumn()-(buffCharIndex()-srcKeep), buffCharLine, buffCharColumn()), "Neprepoznan znak v stringu.");
 			nextChar();
 		}
-		return tmp + "\"";
+		return text(srcKeep, buffCharIndex() + 1);
 	}
 
 	private void nextToken() {
@@ -194,55 +344,56 @@ public class LexAn implements AutoCloseable {
 		 * 	nakonc zmer al return alpa break, k gre za switch
 		 */
 		while(true){
+			srcKeep = buffCharIndex();
 			switch(buffChar){
 			case '+':
-				buffToken = new Token(new Report.Location(buffCharLine, buffCharColumn), Symbol.ADD, "+");
+				buffToken = token(buffCharIndex(), 1, Symbol.ADD, "+");
 				nextChar();
 				return;
 
 			case '*':
-				buffToken = new Token(new Report.Location(buffCharLine, buffCharColumn), Symbol.MUL, "*");
+				buffToken = token(buffCharIndex(), 1, Symbol.MUL, "*");
 				nextChar();
 				return;
 
 			case '/':
-				buffToken = new Token(new Report.Location(buffCharLine, buffCharColumn), Symbol.DIV, "/");
+				buffToken = token(buffCharIndex(), 1, Symbol.DIV, "/");
 				nextChar();
 				return;
 
 			case '%':
-				buffToken = new Token(new Report.Location(buffCharLine, buffCharColumn), Symbol.MOD, "%");
+				buffToken = token(buffCharIndex(), 1, Symbol.MOD, "%");
 				nextChar();
 				return;
 
 			case '^':
-				buffToken = new Token(new Report.Location(buffCharLine, buffCharColumn), Symbol.PTR, "^");
+				buffToken = token(buffCharIndex(), 1, Symbol.PTR, "^");
 				nextChar();
 				return;
 
 			case '(':
-				buffToken = new Token(new Report.Location(buffCharLine, buffCharColumn), Symbol.LPAREN, "(");
+				buffToken = token(buffCharIndex(), 1, Symbol.LPAREN, "(");
 				nextChar();
 				return;
 
 			case ')':
-				buffToken = new Token(new Report.Location(buffCharLine, buffCharColumn), Symbol.RPAREN, ")");
+				buffToken = token(buffCharIndex(), 1, Symbol.RPAREN, ")");
 				nextChar();
 				return;
 
 			case '-':
-				buffToken = new Token(new Report.Location(buffCharLine, buffCharColumn), Symbol.SUB, "-");
+				buffToken = token(buffCharIndex(), 1, Symbol.SUB, "-");
 				nextChar();
 				return;
 
 			case '=':
 				nextChar();
 				if(buffChar == '='){	//torej gre za == operacijo
-					buffToken = new Token(new Report.Location(buffCharLine, buffCharColumn-1, buffCharLine, buffCharColumn), Symbol.EQU, "==");
+					buffToken = token(buffCharIndex(), 2, Symbol.EQU, "==");
 					nextChar();
 				}
 				else {
-					buffToken = new Token(new Report.Location(buffCharLine, buffCharColumn-1), Symbol.ASSIGN, "=");
+					buffToken = token(srcKeep, 1, Symbol.ASSIGN, "=");
 				}
 				return;
 
@@ -253,47 +404,47 @@ public class LexAn implements AutoCloseable {
 			case '&':
 				nextChar();
 				if(buffChar == '&'){
-					buffToken = new Token(new Report.Location(buffCharLine, buffCharColumn-1, buffCharLine, buffCharColumn), Symbol.AND, "&&"); 
+					buffToken = token(buffCharIndex(), 2, Symbol.AND, "&&"); 
 				}
 				else{
-					throw new Report.Error(new Report.Location(buffCharLine, buffCharColumn), "neveljaven znak");
+					throw new Report.Error(new Report.Location(buffCharLine, buffCharColumn()), "neveljaven znak");
 				}
 				nextChar();
 				return;
 			case '|':
 				nextChar();
 				if(buffChar == '|'){
-					buffToken = new Token(new Report.Location(buffCharLine, buffCharColumn-1, buffCharLine, buffCharColumn), Symbol.OR, "||"); 
+					buffToken = token(buffCharIndex(), 2, Symbol.OR, "||"); 
 				}
 				else{
-					throw new Report.Error(new Report.Location(buffCharLine, buffCharColumn), "neveljaven znak");
+					throw new Report.Error(new Report.Location(buffCharLine, buffCharColumn()), "neveljaven znak");
 				}
 				nextChar();
 				return;
 			
 			case '!':
-				buffToken = new Token(new Report.Location(buffCharLine, buffCharColumn), Symbol.NOT, "!");
+				buffToken = token(buffCharIndex(), 1, Symbol.NOT, "!");
 				nextChar();
 				if(buffChar == '=') {
-					buffToken = new Token(new Report.Location(buffCharLine, buffCharColumn-1, buffCharLine, buffCharColumn), Symbol.NEQ, "!=");
+					buffToken = token(buffCharIndex(), 2, Symbol.NEQ, "!=");
 					nextChar();
 				}
 				return; 
 				
 			case '>':
-				buffToken = new Token(new Report.Location(buffCharLine, buffCharColumn), Symbol.GTH, ">");
+				buffToken = token(buffCharIndex(), 1, Symbol.GTH, ">");
 				nextChar();
 				if(buffChar == '='){
-					buffToken = new Token(new Report.Location(buffCharLine, buffCharColumn-1, buffCharLine, buffCharColumn), Symbol.GEQ, ">=");
+					buffToken = token(buffCharIndex(), 2, Symbol.GEQ, ">=");
 					nextChar();
 				}
 				return;
 
 			case '<':
-				buffToken = new Token(new Report.Location(buffCharLine, buffCharColumn), Symbol.LTH, "<");
+				buffToken = token(buffCharIndex(), 1, Symbol.LTH, "<");
 				nextChar();
 				if(buffChar == '='){
-					buffToken = new Token(new Report.Location(buffCharLine, buffCharColumn-1, buffCharLine, buffCharColumn), Symbol.LEQ, "<=");
+					buffToken = token(buffCharIndex(), 2, Symbol.LEQ, "<=");
 					nextChar();
 				}
 				return;
@@ -307,80 +458,48 @@ public class LexAn implements AutoCloseable {
 			}
 			
 			case '0': case '1': case '2': case '3': case '4': case '5': case '6': case '7': case '8': case '9': {
-				String tmp = String.valueOf((char) buffChar);
-				for(nextChar(); buffChar > 47 && buffChar < 58; nextChar()){
-					tmp += String.valueOf((char) buffChar);
-				}
+				for(nextChar(); buffChar > 47 && buffChar < 58; nextChar());
 				if(buffChar >= 'a' && buffChar <= 'z' ||buffChar >= 'A' && buffChar <= 'Z' || buffChar == '_'){ //torej se spremenljivka začne na cifro
-					throw new Report.Error(new Report.Location(buffCharLine, buffCharColumn), "Spremenljivka se ne sme zacet na cifro!");
+					throw new Report.Error(new Report.Location(buffCharLine, buffCharColumn()), "Spremenljivka se ne sme zacet na cifro!");
 				}
-				buffToken = new Token(new Report.Location(buffCharLine, buffCharColumn - tmp.length(), buffCharLine, buffCharColumn-1), Symbol.INTCONST, tmp);
+				String tmp = text(srcKeep, buffCharIndex());
+				buffToken = token(buffCharIndex() - 1, tmp.length(), Symbol.INTCONST, tmp);
 				return;
 			}
 				
 			case '\'':{
 				String znak = znak();
-				buffToken = new Token(new Report.Location(buffCharLine, buffCharColumn - znak.length()+1, buffCharLine, buffCharColumn), Symbol.CHARCONST, znak);
+				buffToken = token(buffCharIndex(), znak.length(), Symbol.CHARCONST, znak);
 				nextChar();
 				return;
 			}	
 			
 			case '\"':{
 				String niz = niz();
-				buffToken = new Token(new Report.Location(buffCharLine, buffCharColumn - niz.length() + 1, buffCharLine, buffCharColumn), Symbol.STRINGCONST, niz);
+				buffToken = token(buffCharIndex(), niz.length(), Symbol.STRINGCONST, niz);
 				nextChar();
 				return;
 			}
 
 			case ',':
-				buffToken = new Token(new Report.Location(buffCharLine, buffCharColumn), Symbol.COMMA, ",");
+				buffToken = token(buffCharIndex(), 1, Symbol.COMMA, ",");
 				nextChar();
 				return;
 
 			case -1:
-				buffToken = new Token(new Report.Location(buffCharLine, buffCharColumn), Symbol.EOF, "EOF");
+				buffToken = token(buffCharIndex(), 1, Symbol.EOF, "EOF");
 				return;
 
 			default:
 				if(buffChar >= 'a' && buffChar <= 'z' || buffChar >= 'A' && buffChar <= 'Z' || buffChar == '_'){
-					String ime = ime();	//keywords ali ime spremenljivke
-					switch (ime){
-						case "fun":
-							buffToken = new Token(new Report.Location(buffCharLine, buffCharColumn - ime.length(), buffCharLine, buffCharColumn-1), Symbol.FUN, ime);
-							return;
-						case "var":
-							buffToken = new Token(new Report.Location(buffCharLine, buffCharColumn - ime.length(), buffCharLine, buffCharColumn-1), Symbol.VAR, ime);
-							return;
-						case "if":
-							buffToken = new Token(new Report.Location(buffCharLine, buffCharColumn - ime.length(), buffCharLine, buffCharColumn-1), Symbol.IF, ime);
-							return;
-						case "then":
-							buffToken = new Token(new Report.Location(buffCharLine, buffCharColumn - ime.length(), buffCharLine, buffCharColumn-1), Symbol.THEN, ime);
-							return;
-						case "else":
-							buffToken = new Token(new Report.Location(buffCharLine, buffCharColumn - ime.length(), buffCharLine, buffCharColumn-1), Symbol.ELSE, ime);
-							return;
-						case "while":
-							buffToken = new Token(new Report.Location(buffCharLine, buffCharColumn - ime.length(), buffCharLine, buffCharColumn-1), Symbol.WHILE, ime);
-							return;
-						case "do":
-							buffToken = new Token(new Report.Location(buffCharLine, buffCharColumn - ime.length(), buffCharLine, buffCharColumn-1), Symbol.DO, ime);
-							return;
-						case "let":
-							buffToken = new Token(new Report.Location(buffCharLine, buffCharColumn - ime.length(), buffCharLine, buffCharColumn-1), Symbol.LET, ime);
-							return;
-						case "in":
-							buffToken = new Token(new Report.Location(buffCharLine, buffCharColumn - ime.length(), buffCharLine, buffCharColumn-1), Symbol.IN, ime);
-							return;
-						case "end":
-							buffToken = new Token(new Report.Location(buffCharLine, buffCharColumn - ime.length(), buffCharLine, buffCharColumn-1), Symbol.END, ime);
-							return;
-						default:
-							buffToken = new Token(new Report.Location(buffCharLine, buffCharColumn - ime.length(), buffCharLine, buffCharColumn-1), Symbol.IDENTIFIER, ime);
-							return;
-					}
+					ime();	//keywords ali ime spremenljivke
+					final int keyword = keyword(srcChars, srcKeep, buffCharIndex());
+					final String ime = keyword == -1 ? names.intern(srcChars, srcKeep, buffCharIndex()) : keywords[keyword];
+					final Symbol symbol = keyword == -1 ? Symbol.IDENTIFIER : keywordSymbols[keyword];
+					buffToken = token(buffCharIndex() - 1, ime.length(), symbol, ime);
+					return;
 				}
-				else throw new Report.Error(new Report.Location(buffCharLine, buffCharColumn), "Neprepoznan znak.");
+				else throw new Report.Error(new Report.Location(buffCharLine, buffCharColumn()), "Neprepoznan znak.");
 		}
 		}
 	}
@@ -410,6 +529,147 @@ public class LexAn implements AutoCloseable {
 		return thisToken;
 	}
 
+	/** Kljucne besede, urejene po vrednosti funkcije {@link keywordHash}. */
+	private static final String[] keywords = new String[16];
+
+	/** Vrste leksikalnih simbolov kljucnih besed v tabeli {@link keywords}. */
+	private static final Symbol[] keywordSymbols = new Symbol[16];
+
+	static {
+		final Symbol[] symbols = { Symbol.FUN, Symbol.VAR, Symbol.IF, Symbol.THEN, Symbol.ELSE, Symbol.WHILE,
+				Symbol.DO, Symbol.LET, Symbol.IN, Symbol.END };
+		for (final Symbol symbol : symbols) {
+			final char[] keyword = symbol.name().toLowerCase().toCharArray();
+			final int hash = keywordHash(keyword, 0, keyword.length);
+			if (keywords[hash] != null)
+				throw new Report.InternalError();
+			keywords[hash] = new String(keyword);
+			keywordSymbols[hash] = symbol;
+		}
+	}
+
+	/**
+	 * Popolna razprsilna funkcija kljucnih besed: razlicne kljucne besede imajo
+	 * razlicne vrednosti.
+	 * 
+	 * @param chars Medpomnilnik z imenom dolzine vsaj 2.
+	 * @param beg   Indeks prvega znaka imena v medpomnilniku.
+	 * @param end   Indeks prvega znaka za koncem imena v medpomnilniku.
+	 * @return Vrednost razprsilne funkcije (med 0 in 15).
+	 */
+	private static int keywordHash(final char[] chars, final int beg, final int end) {
+		return (3 * chars[beg] + chars[beg + 1] + (end - beg)) & 15;
+	}
+
+	/**
+	 * Ugotovi, ali je ime v medpomnilniku kljucna beseda.
+	 * 
+	 * Kljucna beseda se prepozna neposredno iz medpomnilnika z eno samo
+	 * primerjavo, za ime pa se ne ustvari niz.
+	 * 
+	 * @param chars Medpomnilnik z imenom.
+	 * @param beg   Indeks prvega znaka imena v medpomnilniku.
+	 * @param end   Indeks prvega znaka za koncem imena v medpomnilniku.
+	 * @return Indeks kljucne besede v tabeli {@link keywords} ali {@code -1}, ce
+	 *         ime ni kljucna beseda.
+	 */
+	private static int keyword(final char[] chars, final int beg, final int end) {
+		if (end - beg < 2 || end - beg > 5)
+			return -1;
+		final int hash = keywordHash(chars, beg, end);
+		final String keyword = keywords[hash];
+		return keyword != null && Names.equals(keyword, chars, beg, end) ? hash : -1;
+	}
+
+	/**
+	 * Tabela imen.
+	 *
+	 * Vsako ime je v tabeli predstavljeno z enim samim nizom, ki se ustvari ob prvi
+	 * pojavitvi imena v izvorni datoteki; vse nadaljnje pojavitve istega imena
+	 * dobijo isti niz, ne da bi se zanje ustvaril nov niz. Imena v abstraktnem
+	 * sintaksnem drevesu so zato enaka natanko tedaj, ko so isti niz, in jih je
+	 * mogoce primerjati z {@code ==} (glej {@link SemAn}).
+	 */
+	private static class Names {
+
+		/** Razprsena tabela nizov (z odprtim naslavljanjem). */
+		private String[] table = new String[1 << 10];
+
+		/** Stevilo nizov v tabeli. */
+		private int size = 0;
+
+		/**
+		 * Ustvari novo prazno tabelo imen.
+		 */
+		public Names() {
+		}
+
+		/**
+		 * Vrne niz, ki v tabeli predstavlja ime.
+		 *
+		 * @param chars Medpomnilnik z imenom.
+		 * @param beg   Indeks prvega znaka imena v medpomnilniku.
+		 * @param end   Indeks prvega znaka za koncem imena v medpomnilniku.
+		 * @return Niz, ki predstavlja ime.
+		 */
+		public String intern(final char[] chars, final int beg, final int end) {
+			int hash = 0;
+			for (int index = beg; index < end; index++)
+				hash = 31 * hash + chars[index];
+			final int mask = table.length - 1;
+			for (int slot = hash & mask;; slot = (slot + 1) & mask) {
+				final String name = table[slot];
+				if (name == null)
+					return insert(new String(chars, beg, end - beg));
+				if (name.hashCode() == hash && equals(name, chars, beg, end))
+					return name;
+			}
+		}
+
+		/**
+		 * Preveri, ali je niz enak delu medpomnilnika.
+		 *
+		 * @param name  Niz.
+		 * @param chars Medpomnilnik.
+		 * @param beg   Indeks prvega znaka v medpomnilniku.
+		 * @param end   Indeks prvega znaka za koncem v medpomnilniku.
+		 * @return {@code true}, ce sta niz in del medpomnilnika enaka.
+		 */
+		private static boolean equals(final String name, final char[] chars, final int beg, final int end) {
+			if (name.length() != end - beg)
+				return false;
+			for (int index = beg; index < end; index++)
+				if (name.charAt(index - beg) != chars[index])
+					return false;
+			return true;
+		}
+
+		/**
+		 * Vstavi niz v tabelo.
+		 *
+		 * @param name Niz, ki ga se ni v tabeli.
+		 * @return Vstavljeni niz.
+		 */
+		private String insert(final String name) {
+			if (2 * (size + 1) > table.length) {
+				final String[] oldTable = table;
+				table = new String[2 * oldTable.length];
+				size = 0;
+				for (final String oldName : oldTable)
+					if (oldName != null)
+						insert(oldName);
+			}
+			final int mask = table.length - 1;
+			int slot = name.hashCode() & mask;
+			while (table[slot] != null)
+				slot = (slot + 1) & mask;
+			table[slot] = name;
+			size++;
+			return name;
+		}
+
+	}
+
 	// --- ZAGON ---
 
 	/**
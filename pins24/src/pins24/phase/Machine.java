@@ -1,5 +1,8 @@
 package pins24.phase;
 
+import java.io.*;
+import java.lang.invoke.*;
+import java.nio.*;
 import java.util.*;
 import pins24.common.*;
 
@@ -33,16 +36,147 @@ public class Machine {
 	/** Ali se opravi testni izpis dogajanja na skladu. */
 	public static boolean debugStack = false;
 
+	/**
+	 * Ali se pred izracunom pomnilniske predstavitve opravi optimizacija
+	 * abstraktnega sintaksnega drevesa (glej {@link ASTOpt}).
+	 */
+	public static boolean optimizeAST = true;
+
+	/**
+	 * Ali se klici v repnem polozaju funkcij prevedejo z ukazom {@link PDM.TCAL},
+	 * ki namesto novega klicnega zapisa uporabi klicni zapis klicatelja.
+	 */
+	public static boolean optimizeTailCalls = true;
+
+	/** Ali se pred izvajanjem opravi optimizacija kode (glej {@link CodeOpt}). */
+	public static boolean optimizeCode = true;
+
+	/**
+	 * Ali stroj vrednost na vrhu sklada hrani v lokalni spremenljivki in jo zapise
+	 * v pomnilnik le, ko ukaz potrebuje dejansko vsebino sklada (ob testnem izpisu
+	 * dogajanja na skladu se ne uporablja).
+	 */
+	public static boolean cacheStackTop = true;
+
+	/** Ali se ob koncu izvajanja izpise statistika uporabe kopice. */
+	public static boolean heapStats = false;
+
+	/**
+	 * Ali se ob neuspesni rezervaciji prostora na kopici opravi (konzervativno)
+	 * zbiranje smeti.
+	 */
+	public static boolean collectGarbage = false;
+
+	/**
+	 * Ali se podprogrami pred izvajanjem prevedejo v bajtno kodo JVM (glej
+	 * {@link Bytecode}).
+	 */
+	public static boolean compileCode = false;
+
+	/**
+	 * Ali se podprogrami, ki se pogosto klicejo ali v katerih se zanke pogosto
+	 * ponavljajo, med izvajanjem prevedejo v bajtno kodo JVM (glej
+	 * {@link Bytecode}), ostali pa se izvajajo s skladovnim strojem.
+	 */
+	public static boolean tieredCompilation = true;
+
 	/**
 	 * Izvajanje skladovnega stroja.
 	 */
 	public static class Executor {
 
-		/** Seznam ukazov kode programa. */
-		private final HashMap<Integer, PDM.CodeInstr> program = new HashMap<Integer, PDM.CodeInstr>();
+		// Operacijske kode predhodno dekodiranih ukazov:
+
+		/** Neveljaven naslov ukaza (npr. znotraj operanda ukaza). */
+		private static final int OP_NONE = 0;
+		/** {@link PDM.INIT}. */
+		private static final int OP_INIT = 1;
+		/** {@link PDM.LOAD}. */
+		private static final int OP_LOAD = 2;
+		/** {@link PDM.SAVE}. */
+		private static final int OP_SAVE = 3;
+		/** {@link PDM.POPN}. */
+		private static final int OP_POPN = 4;
+		/** {@link PDM.PUSH}. */
+		private static final int OP_PUSH = 5;
+		/** {@link PDM.NAME} (le pred povezovanjem, nato {@link #OP_PUSH}). */
+		private static final int OP_NAME = 6;
+		/** {@link PDM.REGN} z registrom {@code PC}. */
+		private static final int OP_REGN_PC = 7;
+		/** {@link PDM.REGN} z registrom {@code FP}. */
+		private static final int OP_REGN_FP = 8;
+		/** {@link PDM.REGN} z registrom {@code SP}. */
+		private static final int OP_REGN_SP = 9;
+		/** {@link PDM.UJMP}. */
+		private static final int OP_UJMP = 10;
+		/** {@link PDM.CJMP}. */
+		private static final int OP_CJMP = 11;
+		/** {@link PDM.CALL}. */
+		private static final int OP_CALL = 12;
+		/** {@link PDM.RETN}. */
+		private static final int OP_RETN = 13;
+		/** {@link PDM.LOADFP} brez sledenja staticni povezavi. */
+		private static final int OP_LOADFP = 14;
+		/** {@link PDM.SAVEFP} brez sledenja staticni povezavi. */
+		private static final int OP_SAVEFP = 15;
+		/** {@link PDM.LOADFP} s sledenjem staticni povezavi. */
+		private static final int OP_LOADSL = 31;
+		/** {@link PDM.SAVEFP} s sledenjem staticni povezavi. */
+		private static final int OP_SAVESL = 32;
+		/** {@link PDM.TCAL}. */
+		private static final int OP_TCAL = 33;
+		/** {@link PDM.OPER.Oper#NOT}. */
+		private static final int OP_NOT = 16;
+		/** {@link PDM.OPER.Oper#NEG}. */
+		private static final int OP_NEG = 17;
+		/** {@link PDM.OPER.Oper#OR}. */
+		private static final int OP_OR = 18;
+		/** {@link PDM.OPER.Oper#AND}. */
+		private static final int OP_AND = 19;
+		/** {@link PDM.OPER.Oper#EQU}. */
+		private static final int OP_EQU = 20;
+		/** {@link PDM.OPER.Oper#NEQ}. */
+		private static final int OP_NEQ = 21;
+		/** {@link PDM.OPER.Oper#GTH}. */
+		private static final int OP_GTH = 22;
+		/** {@link PDM.OPER.Oper#LTH}. */
+		private static final int OP_LTH = 23;
+		/** {@link PDM.OPER.Oper#GEQ}. */
+		private static final int OP_GEQ = 24;
+		/** {@link PDM.OPER.Oper#LEQ}. */
+		private static final int OP_LEQ = 25;
+		/** {@link PDM.OPER.Oper#ADD}. */
+		private static final int OP_ADD = 26;
+		/** {@link PDM.OPER.Oper#SUB}. */
+		private static final int OP_SUB = 27;
+		/** {@link PDM.OPER.Oper#MUL}. */
+		private static final int OP_MUL = 28;
+		/** {@link PDM.OPER.Oper#DIV}. */
+		private static final int OP_DIV = 29;
+		/** {@link PDM.OPER.Oper#MOD}. */
+		private static final int OP_MOD = 30;
+
+		/**
+		 * Operacijske kode ukazov kode programa, indeksirane z naslovom ukaza
+		 * (vrednostjo programskega stevca).
+		 */
+		private final int[] opcodes;
+
+		/**
+		 * Operandi ukazov kode programa, indeksirani z naslovom ukaza (pri ukazih z
+		 * dvema operandoma je drugi operand na naslednjem naslovu).
+		 */
+		private final int[] operands;
+
+		/** Ukazi kode programa, indeksirani z naslovom ukaza. */
+		private final PDM.INSTR[] instrs;
+
+		/** Naslov dna sklada (sklad raste proti nizjim naslovom). */
+		private static final int STACK_TOP = 0x10000;
 
-		/** Pomnilnik (brez predstavitve ukazov. */
-		private final HashMap<Integer, Byte> memory = new HashMap<Integer, Byte>();
+		/** Dostop do 32-bitnih besed v pomnilniku (little-endian). */
+		private static final VarHandle WORD = MethodHandles.byteArrayViewVarHandle(int[].class,
+				ByteOrder.LITTLE_ENDIAN);
 
 		/** Preslikava imen oznak v fizicne naslove. */
 		private final HashMap<String, Integer> labelToAddr = new HashMap<String, Integer>();
@@ -56,11 +190,52 @@ public class Machine {
 		/** Velikost segmenta s staticnimi spremenljivkami. */
 		private final int dataSegmentSize;
 
-		/** Preslikava naslova v lokacijo kode, ki je izvor vrednosti na naslovu. */
-		final HashMap<Integer, String> debugLocs = new HashMap<Integer, String>();
+		/**
+		 * Velikost parametrov funkcije {@code main} (skupaj s staticno povezavo), ki
+		 * jih funkcija {@code main} bere nad dnom sklada.
+		 */
+		private final int mainParsSize;
 
-		/** Preslikava naslova v pomen podatka, ki je shranjen na naslovu. */
-		final HashMap<Integer, String> debugDscs = new HashMap<Integer, String>();
+		/**
+		 * Vsebina segmenta s staticnimi spremenljivkami ob zacetku izvajanja
+		 * programa.
+		 */
+		private final byte[] dataSegmentImage;
+
+		/**
+		 * Podprogrami, prevedeni v bajtno kodo JVM, indeksirani z naslovom
+		 * podprograma, ali {@code null}, ce se koda ne prevaja. Med izvajanjem se
+		 * lahko dodajajo (glej {@link #tiered}); ker prevedena koda nima stanja,
+		 * lahko vsaka nit vidi nov podprogram nekoliko kasneje.
+		 */
+		private final Bytecode.Code[] compiled;
+
+		/**
+		 * Stevilo klicev podprograma, po katerem se podprogram prevede v bajtno kodo
+		 * JVM.
+		 */
+		private static final int CALL_THRESHOLD = 1000;
+
+		/**
+		 * Stevilo skokov na zacetek zanke, po katerem se podprogram z zanko prevede v
+		 * bajtno kodo JVM in se izvajanje zanke nadaljuje v prevedeni kodi.
+		 */
+		private static final int LOOP_THRESHOLD = 10000;
+
+		/**
+		 * Ali se podprogrami prevajajo med izvajanjem (glej
+		 * {@link Machine#tieredCompilation}).
+		 */
+		private final boolean tiered;
+
+		/**
+		 * Podprogrami, urejeni po naslovu (le ce se podprogrami prevajajo med
+		 * izvajanjem).
+		 */
+		private final Bytecode.Function[] functions;
+
+		/** Podprogrami, ki se jih je ze poskusilo prevesti med izvajanjem. */
+		private final boolean[] promoted;
 
 		{
 			labelToAddr.put("exit", -1);
@@ -79,128 +254,138 @@ public class Machine {
 			addrToLabel.put(-7, "del");
 		}
 
-		/** Programski stevec. */
-		private int PC;
-
-		/** Klicni kazalec. */
-		private int FP;
-
-		/** Skladovni kazalec. */
-		private int SP;
-
-		/** Kazalec na prvi prosti naslov na kopici. */
-		private int HP;
-
 		/**
-		 * Shrani vrednost v pomnilnik.
+		 * Izracuna vrednost binarne operacije.
 		 * 
-		 * @param addr       Pomnilniski naslov.
-		 * @param value      Vrednost.
-		 * @param debugInstr Lokacija dela izvorne kode, ki zahteva shranjevanje.
+		 * @param opcode Operacijska koda binarne operacije.
+		 * @param fst    Vrednost prvega operanda.
+		 * @param snd    Vrednost drugega operanda.
+		 * @return Vrednost operacije.
 		 */
-		private void memSAVE(int addr, int value, final PDM.INSTR debugInstr) {
-			if (addr < codeSegmentSize)
-				throw new Report.InternalError();
-			if (debugStack && (debugInstr != null) && (debugInstr.debugLocation != null))
-				debugLocs.put(addr, debugInstr.debugLocation.toString());
-			for (int b = 0; b < 4; b++) {
-				int val = ((value >> (b * 8)) & 0xFF);
-				memory.put(addr, (byte) val);
-				addr += 1;
-			}
+		private static int oper(final int opcode, final int fst, final int snd) {
+			return switch (opcode) {
+			case OP_OR -> (fst != 0) || (snd != 0) ? 1 : 0;
+			case OP_AND -> (fst != 0) && (snd != 0) ? 1 : 0;
+			case OP_EQU -> fst == snd ? 1 : 0;
+			case OP_NEQ -> fst != snd ? 1 : 0;
+			case OP_GTH -> fst > snd ? 1 : 0;
+			case OP_LTH -> fst < snd ? 1 : 0;
+			case OP_GEQ -> fst >= snd ? 1 : 0;
+			case OP_LEQ -> fst <= snd ? 1 : 0;
+			case OP_ADD -> fst + snd;
+			case OP_SUB -> fst - snd;
+			case OP_MUL -> fst * snd;
+			case OP_DIV -> fst / snd;
+			case OP_MOD -> fst % snd;
+			default -> throw new Report.InternalError();
+			};
 		}
 
 		/**
-		 * Prebere vrednost iz pomnilnika.
+		 * Vrne operacijsko kodo ukaza.
 		 * 
-		 * @param addr Pomnilniski naslov.
-		 * @return Vrednost.
+		 * @param instr Ukaz kode programa.
+		 * @return Operacijska koda ukaza.
 		 */
-		private int memLOAD(int addr) {
-			if (addr < codeSegmentSize)
-				throw new Report.InternalError();
-			int value = 0;
-			for (int b = 0; b < 4; b++) {
-				Byte val = memory.get(addr);
-				addr += 1;
-				if (val == null)
-					val = 0;
-				value = value | (((val < 0) ? ((int) val) + 256 : ((int) val)) << (b * 8));
-			}
-			return value;
+		private static int opcode(final PDM.CodeInstr instr) {
+			return switch (instr) {
+			case PDM.INIT i -> OP_INIT;
+			case PDM.LOAD i -> OP_LOAD;
+			case PDM.SAVE i -> OP_SAVE;
+			case PDM.POPN i -> OP_POPN;
+			case PDM.PUSH i -> OP_PUSH;
+			case PDM.NAME i -> OP_NAME;
+			case PDM.REGN i -> switch (i.regn) {
+			case PC -> OP_REGN_PC;
+			case FP -> OP_REGN_FP;
+			case SP -> OP_REGN_SP;
+			};
+			case PDM.OPER i -> switch (i.oper) {
+			case NOT -> OP_NOT;
+			case NEG -> OP_NEG;
+			case OR -> OP_OR;
+			case AND -> OP_AND;
+			case EQU -> OP_EQU;
+			case NEQ -> OP_NEQ;
+			case GTH -> OP_GTH;
+			case LTH -> OP_LTH;
+			case GEQ -> OP_GEQ;
+			case LEQ -> OP_LEQ;
+			case ADD -> OP_ADD;
+			case SUB -> OP_SUB;
+			case MUL -> OP_MUL;
+			case DIV -> OP_DIV;
+			case MOD -> OP_MOD;
+			};
+			case PDM.UJMP i -> OP_UJMP;
+			case PDM.CJMP i -> OP_CJMP;
+			case PDM.CALL i -> OP_CALL;
+			case PDM.RETN i -> OP_RETN;
+			case PDM.TCAL i -> OP_TCAL;
+			case PDM.LOADFP i -> i.hops == 0 ? OP_LOADFP : OP_LOADSL;
+			case PDM.SAVEFP i -> i.hops == 0 ? OP_SAVEFP : OP_SAVESL;
+			default -> throw new Report.InternalError();
+			};
 		}
 
 		/**
-		 * Prenos nove vrednosti na sklad.
-		 * 
-		 * @param value      Vrednost.
-		 * @param debugInstr Lokacija dela izvorne kode, ki prenos nove vrednosti na
-		 *                   sklad.
-		 */
-		private void push(final int value, final PDM.INSTR debugInstr) {
-			SP -= 4;
-			memSAVE(SP, value, debugInstr);
-		}
-
-		/**
-		 * Prevzem vrednost z vrha sklada.
-		 * 
-		 * @return Vrednost.
-		 */
-		private int pop() {
-			if (debugStack)
-				debugLocs.put(SP, null);
-			final int value = memLOAD(SP);
-			SP += 4;
-			return value;
-		}
-
-		/**
-		 * Ustvari nov skladovni stroj za podan program in ta program izvede.
+		 * Ustvari nov skladovni stroj za podan program: program nalozi in poveze,
+		 * izvede pa ga sele {@link #run(InputStream, PrintStream)}.
 		 * 
 		 * @param codeSegment Seznam ukazov, ki predstavljajo kodo programa.
 		 * @param dataSegment Seznam ukazov, ki predstavljajo podatke programa.
 		 */
 		public Executor(final List<PDM.CodeInstr> codeSegment, final List<PDM.DataInstr> dataSegment) {
 
-			Scanner scanner = new Scanner(System.in);
-
 			int memPtr = 0;
 
+			for (final PDM.CodeInstr instr : codeSegment)
+				memPtr += instr.size();
+			opcodes = new int[memPtr];
+			operands = new int[memPtr];
+			instrs = new PDM.INSTR[memPtr];
+			memPtr = 0;
+			int mainPars = 0;
+
 			if (debugLabelsList)
 				System.out.println("\n\033[1mCODE LABELS:\033[0m");
 			for (final PDM.CodeInstr instr : codeSegment) {
-				switch (instr) {
-				case PDM.LABEL i -> {
+				if (instr instanceof PDM.LABEL i) {
 					labelToAddr.put(i.name, memPtr);
 					addrToLabel.put(memPtr, i.name);
 					if (debugLabelsList)
 						System.out.printf("LABEL %s = %d\n", i.name, memPtr);
-					memPtr -= 1;
-				}
-				case PDM.INIT i -> program.put(memPtr, i);
-				case PDM.LOAD i -> program.put(memPtr, i);
-				case PDM.SAVE i -> program.put(memPtr, i);
-				case PDM.POPN i -> program.put(memPtr, i);
-				case PDM.PUSH i -> {
-					program.put(memPtr, i);
-					memPtr += 4;
+					continue;
 				}
-				case PDM.NAME i -> {
-					program.put(memPtr, i);
-					memPtr += 4;
+				opcodes[memPtr] = opcode(instr);
+				if (instr instanceof PDM.PUSH i)
+					operands[memPtr] = i.intc;
+				if (instr instanceof PDM.LOADFP i) {
+					operands[memPtr] = i.offset;
+					operands[memPtr + 1] = i.hops;
 				}
-				case PDM.REGN i -> program.put(memPtr, i);
-				case PDM.OPER i -> program.put(memPtr, i);
-				case PDM.UJMP i -> program.put(memPtr, i);
-				case PDM.CJMP i -> program.put(memPtr, i);
-				case PDM.CALL i -> program.put(memPtr, i);
-				case PDM.RETN i -> program.put(memPtr, i);
-				default -> throw new Report.InternalError();
+				if (instr instanceof PDM.SAVEFP i) {
+					operands[memPtr] = i.offset;
+					operands[memPtr + 1] = i.hops;
+				}
+				if (instr instanceof PDM.TCAL i) {
+					operands[memPtr] = i.argsSize;
+					operands[memPtr + 1] = i.parsSize;
 				}
-				memPtr += 1;
+				if (instr instanceof PDM.RETN i && i.debugFrame != null && i.debugFrame.name.equals("main"))
+					mainPars = i.debugFrame.parsSize;
+				instrs[memPtr] = (PDM.INSTR) instr;
+				memPtr += instr.size();
 			}
 			codeSegmentSize = memPtr;
+			mainParsSize = (mainPars + 3) & ~3;
+
+			int dataPtr = memPtr;
+			for (final PDM.DataInstr instr : dataSegment)
+				dataPtr += instr.size();
+			if (dataPtr > STACK_TOP)
+				throw new Report.Error("Program does not fit into memory.");
+			dataSegmentImage = new byte[dataPtr - codeSegmentSize];
 
 			if (debugLabelsList)
 				System.out.println("\n\033[1mDATA LABELS:\033[0m");
@@ -216,7 +401,7 @@ public class Machine {
 					memPtr += i.size;
 				}
 				case PDM.DATA i -> {
-					memSAVE(memPtr, i.intc, i);
+					WORD.set(dataSegmentImage, memPtr - codeSegmentSize, i.intc);
 					memPtr += 4;
 				}
 				default -> throw new Report.InternalError();
@@ -224,46 +409,1116 @@ public class Machine {
 			}
 			dataSegmentSize = memPtr - codeSegmentSize;
 
-			PC = 0;
-			FP = 0x10000;
-			SP = 0x10000;
-			HP = codeSegmentSize + dataSegmentSize;
+			// povezovanje: vsak ukaz NAME se nadomesti s ukazom PUSH naslova oznake
+			for (int addr = 0; addr < codeSegmentSize; addr++) {
+				if (opcodes[addr] != OP_NAME)
+					continue;
+				final PDM.NAME name = (PDM.NAME) instrs[addr];
+				final Integer labelAddr = labelToAddr.get(name.name);
+				if (labelAddr == null) {
+					if (name.debugLocation == null)
+						throw new Report.Error("Undefined label '" + name.name + "'.");
+					else
+						throw new Report.Error(name.debugLocation, "Undefined label '" + name.name + "'.");
+				}
+				opcodes[addr] = OP_PUSH;
+				operands[addr] = labelAddr;
+			}
 
-			push(-1, null);
-			FP = SP + 0;
-			push(-1, null);
-			SP = SP + 0;
+			tiered = tieredCompilation && !compileCode;
+			if (compileCode) {
+				compiled = new Bytecode.Code[codeSegmentSize];
+				Bytecode.compile(Bytecode.functions(instrs, labelToAddr), instrs, labelToAddr, addrToLabel,
+						codeSegmentSize, compiled);
+			} else
+				compiled = tiered ? new Bytecode.Code[codeSegmentSize] : null;
+			if (tiered) {
+				functions = Bytecode.functions(instrs, labelToAddr).toArray(new Bytecode.Function[0]);
+				Arrays.sort(functions, Comparator.comparingInt(Bytecode.Function::begAddr));
+				promoted = new boolean[codeSegmentSize];
+			} else {
+				functions = null;
+				promoted = null;
+			}
+		}
+
+		/**
+		 * Prevede podprogram, ki vsebuje dani naslov, v bajtno kodo JVM (ce ga se ni
+		 * poskusilo prevesti).
+		 *
+		 * @param addr Naslov v podprogramu.
+		 * @return Naslov podprograma ali {@code -1}, ce naslov ni v nobenem
+		 *         podprogramu.
+		 */
+		private synchronized int promote(final int addr) {
+			int lo = 0;
+			int hi = functions.length - 1;
+			while (lo <= hi) {
+				final int mid = (lo + hi) >>> 1;
+				if (functions[mid].endAddr() < addr)
+					lo = mid + 1;
+				else if (functions[mid].begAddr() > addr)
+					hi = mid - 1;
+				else {
+					final Bytecode.Function function = functions[mid];
+					if (!promoted[function.begAddr()]) {
+						promoted[function.begAddr()] = true;
+						Bytecode.compile(List.of(function), instrs, labelToAddr, addrToLabel, codeSegmentSize,
+								compiled);
+					}
+					return function.begAddr();
+				}
+			}
+			return -1;
+		}
+
+		/**
+		 * Rezultat izvajanja programa.
+		 * 
+		 * @param exitCode  Izhodna koda programa ali {@code -1}, ce je izvajanje
+		 *                  prekinila napaka.
+		 * @param numInstrs Stevilo izvedenih ukazov (tudi ce je izvajanje prekinila
+		 *                  napaka).
+		 * @param error     Napaka, ki je prekinila izvajanje, ali {@code null}.
+		 */
+		public record Result(int exitCode, long numInstrs, Throwable error) {
+		}
+
+		/**
+		 * Izvede program. Vsako izvajanje ima svoje stanje stroja (pomnilnik in
+		 * registre), zato se isti nalozen program lahko izvede veckrat.
+		 * 
+		 * @param input  Vhod programa.
+		 * @param output Izhod programa.
+		 * @return Izhodna koda programa.
+		 */
+		public int run(final InputStream input, final PrintStream output) {
+			final Result result = run(input, output, Long.MAX_VALUE);
+			switch (result.error()) {
+			case null -> {
+			}
+			case RuntimeException error -> throw error;
+			case Error error -> throw error;
+			default -> throw new Report.InternalError();
+			}
+			return result.exitCode();
+		}
 
-			System.out.printf("\n");
-			loop: while (true) {
+		/**
+		 * Izvede program z omejenim stevilom ukazov. Vsako izvajanje ima svoje
+		 * stanje stroja (pomnilnik, registre, vhod in izhod), zato se lahko isti
+		 * nalozen program hkrati izvaja v vec nitih. Napaka med izvajanjem se ne
+		 * sprozi, temvec se vrne v rezultatu skupaj s stevilom izvedenih ukazov.
+		 * 
+		 * @param input     Vhod programa.
+		 * @param output    Izhod programa.
+		 * @param maxInstrs Najvecje stevilo ukazov, ki jih program sme izvesti.
+		 * @return Rezultat izvajanja programa.
+		 */
+		public Result run(final InputStream input, final PrintStream output, final long maxInstrs) {
+			final State state = new State(input, output, maxInstrs);
+			output.printf("\n");
+			Throwable error = null;
+			try {
+				if (state.cacheTop)
+					state.executeCached();
+				else
+					state.execute();
+			} catch (Throwable throwable) {
+				error = throwable;
+			} finally {
+				state.flushOutput();
+				output.flush();
+			}
+			return new Result(error == null ? state.exitCode : -1, maxInstrs - state.budget, error);
+		}
+
+		/**
+		 * Stanje stroja med enim izvajanjem programa.
+		 */
+		private class State extends Bytecode.Runtime {
+
+			/** Preslikava naslova v lokacijo kode, ki je izvor vrednosti na naslovu. */
+			final HashMap<Integer, String> debugLocs = new HashMap<Integer, String>();
+
+			/** Preslikava naslova v pomen podatka, ki je shranjen na naslovu. */
+			final HashMap<Integer, String> debugDscs = new HashMap<Integer, String>();
+
+			/** Programski stevec. */
+			private int PC;
+
+			/** Klicni kazalec. */
+			private int FP;
+
+			/** Skladovni kazalec. */
+			private int SP;
+
+			/** Kazalec na prvi prosti naslov nad kopico. */
+			private int HP;
+
+			/** Kopica. */
+			private final Heap heap;
+
+			/** Vhod programa. */
+			private final InputStream input;
+
+			/** Medpomnilnik vhoda programa. */
+			private final byte[] inBuffer = new byte[8192];
+
+			/** Indeks naslednjega neprebranega znaka v medpomnilniku vhoda. */
+			private int inBufferPos = 0;
+
+			/** Stevilo znakov v medpomnilniku vhoda. */
+			private int inBufferLen = 0;
+
+			/** Medpomnilnik vrstice, ki jo prebere {@code getstr}. */
+			private byte[] lineBuffer = new byte[256];
+
+			/** Izhod programa. */
+			private final PrintStream output;
+
+			/** Medpomnilnik izhoda programa. */
+			private final byte[] outBuffer = new byte[8192];
+
+			/** Stevilo znakov v medpomnilniku izhoda. */
+			private int outBufferLen = 0;
+
+			/** Izhodna koda programa (ko se program konca). */
+			private int exitCode;
+
+			/**
+			 * Stevilo vrednosti v {@link #pending}, ki jih ima prevedena koda v lokalnih
+			 * spremenljivkah.
+			 */
+			private int numPending = 0;
+
+			/**
+			 * Ali se opravi testni izpis dogajanja na skladu (vrednost
+			 * {@link Machine#debugStack} ob zacetku izvajanja).
+			 */
+			private final boolean debugStack = Machine.debugStack;
+
+			/**
+			 * Ali se vrednost na vrhu sklada hrani v lokalni spremenljivki (glej
+			 * {@link Machine#cacheStackTop}).
+			 */
+			private final boolean cacheTop = cacheStackTop && !debugStack;
+
+			/** Ali se podprogrami, prevedeni v bajtno kodo JVM, izvajajo prevedeni. */
+			private final boolean useCompiled = compiled != null && !debugStack;
+
+			/**
+			 * Stevila klicev podprogramov, indeksirana z naslovom podprograma. Stevci
+			 * pripadajo enemu izvajanju, zato jih vzporedna izvajanja ne delijo; prevedeni
+			 * podprogrami pa so skupni vsem izvajanjem (glej {@link Executor#promote}).
+			 */
+			private final int[] callCounts = tiered && useCompiled ? new int[codeSegmentSize] : null;
+
+			/** Stevila skokov nazaj, indeksirana z naslovom ciljne oznake. */
+			private final int[] loopCounts = tiered && useCompiled ? new int[codeSegmentSize] : null;
+
+			/**
+			 * Pripravi stanje stroja za zacetek izvajanja programa.
+			 * 
+			 * @param input     Vhod programa.
+			 * @param output    Izhod programa.
+			 * @param maxInstrs Najvecje stevilo ukazov, ki jih program sme izvesti.
+			 */
+			State(final InputStream input, final PrintStream output, final long maxInstrs) {
+				// pomnilnik (skupaj s prostorom, ki ga zaseda predstavitev ukazov): staticne
+				// spremenljivke, kopica in sklad od naslova 0 do STACK_TOP, nad njim pa
+				// parametri funkcije main
+				super(new byte[STACK_TOP + mainParsSize], compiled);
+				this.input = input;
+				this.output = output;
+				this.budget = maxInstrs;
+				System.arraycopy(dataSegmentImage, 0, memory, codeSegmentSize, dataSegmentSize);
+
+				PC = 0;
+				FP = STACK_TOP;
+				SP = STACK_TOP;
+				HP = codeSegmentSize + dataSegmentSize;
+				heap = new Heap(HP);
+
+				push(-1, null);
+				FP = SP + 0;
+				push(-1, null);
+				SP = SP + 0;
+			}
+
+			/**
+			 * Shrani vrednost v pomnilnik.
+			 * 
+			 * @param addr       Pomnilniski naslov.
+			 * @param value      Vrednost.
+			 * @param debugInstr Lokacija dela izvorne kode, ki zahteva shranjevanje.
+			 */
+			private void memSAVE(int addr, int value, final PDM.INSTR debugInstr) {
+				if (addr < codeSegmentSize || addr > memory.length - 4)
+					throw new Report.InternalError();
+				if (debugStack && (debugInstr != null) && (debugInstr.debugLocation != null))
+					debugLocs.put(addr, debugInstr.debugLocation.location().toString());
+				WORD.set(memory, addr, value);
+			}
+
+			/**
+			 * Prebere vrednost iz pomnilnika.
+			 * 
+			 * @param addr Pomnilniski naslov.
+			 * @return Vrednost.
+			 */
+			private int memLOAD(int addr) {
+				if (addr < codeSegmentSize || addr > memory.length - 4)
+					throw new Report.InternalError();
+				return (int) WORD.get(memory, addr);
+			}
+
+			/**
+			 * Prenos nove vrednosti na sklad.
+			 * 
+			 * @param value      Vrednost.
+			 * @param debugInstr Lokacija dela izvorne kode, ki prenos nove vrednosti na
+			 *                   sklad.
+			 */
+			private void push(final int value, final PDM.INSTR debugInstr) {
+				if (SP - 4 < HP) {
+					// vrednost, ki se se ni na skladu, je lahko kazalec v kopico:
+					pending[0] = value;
+					numPending = 1;
+					try {
+						growStack(SP - 4);
+					} finally {
+						numPending = 0;
+					}
+				}
+				SP -= 4;
+				memSAVE(SP, value, debugInstr);
+			}
+
+			/**
+			 * Prevzem vrednost z vrha sklada.
+			 * 
+			 * @return Vrednost.
+			 */
+			private int pop() {
+				if (debugStack)
+					debugLocs.put(SP, null);
+				final int value = memLOAD(SP);
+				SP += 4;
+				return value;
+			}
+
+			/**
+			 * Odstrani podano stevilo bajtov z vrha sklada ali, ce je stevilo negativno,
+			 * na sklad doda ustrezno stevilo nicel, vse naenkrat (brez testnega izpisa).
+			 * 
+			 * @param n Stevilo bajtov (zaokrozeno navzgor na cele besede).
+			 */
+			private void popn(final int n) {
+				if (n < 0) {
+					final int newSP = SP - 4 * ((3 - n) / 4);
+					if (newSP < HP)
+						growStack(newSP);
+					Arrays.fill(memory, newSP, SP, (byte) 0);
+					SP = newSP;
+				} else {
+					final int newSP = SP + 4 * ((n + 3) / 4);
+					if (newSP > memory.length)
+						throw new Report.InternalError();
+					SP = newSP;
+				}
+			}
+
+			/**
+			 * Vrne naslov klicnega zapisa, do katerega se pride s sledenjem staticni
+			 * povezavi od klicnega zapisa, na katerega kaze {@code FP}.
+			 * 
+			 * @param hops Stevilo sledenj staticni povezavi.
+			 * @return Naslov klicnega zapisa.
+			 */
+			private int frame(int hops) {
+				int addr = FP;
+				while (hops-- > 0)
+					addr = memLOAD(addr);
+				return addr;
+			}
+
+			/**
+			 * Ob trku sklada s kopico poskusi sprostiti prostor z zbiranjem smeti,
+			 * sicer sprozi napako.
+			 * 
+			 * @param newSP Nova vrednost skladovnega kazalca.
+			 */
+			private void growStack(final int newSP) {
+				if (heap.collectGarbage)
+					heap.collect();
+				if (newSP < HP)
+					throw new Report.Error("Stack overflow (stack collided with heap, SP=" + SP + ", HP=" + HP + ").");
+			}
+
+			// --- KOPICA ---
+
+			/**
+			 * Kopica z bloki spremenljive velikosti.
+			 * 
+			 * Vsak blok ima na zacetku glavo z velikostjo bloka (skupaj z glavo), v
+			 * najnizjem bitu glave je zapisano, ali je blok zaseden, v naslednjem bitu pa,
+			 * ali je prost blok pred njim. Zaseden blok ima le glavo, zato blok za
+			 * {@code new(8)} zasede 12 bajtov. Prosti bloki so razvrsceni v dvojno
+			 * povezane sezname po razredih velikosti, naslednika in predhodnika pa hranijo
+			 * v prvih dveh besedah vsebine. Prosti blok, vecji od najmanjse velikosti
+			 * bloka, ima na koncu se nogo z negativno velikostjo bloka; predhodnik bloka
+			 * najmanjse velikosti pa je vedno naslov ali {@code 0}, zato zadnja beseda
+			 * prostega bloka doloca njegovo velikost. Sosednji prosti bloki se ob
+			 * sproscanju zdruzijo, prost blok na vrhu kopice pa se vrne skladu (kopica
+			 * se zmanjsa).
+			 * 
+			 * Ce je vklopljeno zbiranje smeti (glej {@link Machine#collectGarbage}), se
+			 * ob neuspesni rezervaciji prostora sprostijo vsi zasedeni bloki, ki niso
+			 * dosegljivi s sklada, iz staticnih spremenljivk ali iz dosegljivih blokov.
+			 * Vsaka beseda, ki kaze v vsebino zasedenega bloka, se steje za kazalec.
+			 */
+			private class Heap {
+
+				/** Velikost glave oziroma noge bloka. */
+				private static final int TAG_SIZE = 4;
+
+				/** Najmanjsa velikost bloka: glava, naslednik in predhodnik. */
+				private static final int MIN_BLOCK_SIZE = 12;
+
+				/** Oznaka zasedenosti bloka v glavi bloka. */
+				private static final int USED = 1;
+
+				/** Oznaka v glavi bloka, da je blok pred njim prost. */
+				private static final int PREV_FREE = 2;
+
+				/** Stevilo razredov velikosti prostih blokov. */
+				private static final int NUM_CLASSES = 16;
+
+				/**
+				 * Prostor pod skladom, v katerega kopica pri zbiranju smeti zraste sele, ce
+				 * zbiranje smeti ne sprosti dovolj velikega bloka.
+				 */
+				private static final int STACK_RESERVE = 4096;
+
+				/** Naslov zacetka kopice. */
+				private final int base;
+
+				/**
+				 * Naslovi prvih prostih blokov v posameznih razredih velikosti ({@code 0}
+				 * za prazen seznam).
+				 */
+				private final int[] freeLists = new int[NUM_CLASSES];
+
+				/** Stevilo klicev {@code new}. */
+				private long numAllocs = 0;
+
+				/** Stevilo klicev {@code del}. */
+				private long numFrees = 0;
+
+				/** Skupno stevilo zahtevanih bajtov. */
+				private long allocatedBytes = 0;
+
+				/** Stevilo bajtov v zasedenih blokih (skupaj z glavami). */
+				private int usedBytes = 0;
+
+				/** Najvecja velikost kopice. */
+				private int peakSize = 0;
+
+				/** Ali se opravi zbiranje smeti. */
+				private final boolean collectGarbage = Machine.collectGarbage;
+
+				/** Stevilo zbiranj smeti. */
+				private int numCollections = 0;
+
+				/** Skupni cas zbiranja smeti v nanosekundah. */
+				private long totalPause = 0;
+
+				/** Najdaljsi cas zbiranja smeti v nanosekundah. */
+				private long maxPause = 0;
+
+				/** Stevilo bajtov v blokih, ki jih je sprostilo zbiranje smeti. */
+				private long reclaimedBytes = 0;
+
+				/** Naslovi zasedenih blokov (urejeni narascajoce) med zbiranjem smeti. */
+				private int[] blocks = new int[64];
+
+				/** Stevilo zasedenih blokov med zbiranjem smeti. */
+				private int numBlocks;
+
+				/** Oznake dosegljivosti zasedenih blokov med zbiranjem smeti. */
+				private boolean[] marked = new boolean[64];
+
+				/** Indeksi dosegljivih blokov, katerih vsebina se ni pregledana. */
+				private int[] worklist = new int[64];
+
+				/** Stevilo indeksov v {@link #worklist}. */
+				private int worklistLen;
+
+				/**
+				 * Ustvari prazno kopico.
+				 * 
+				 * @param base Naslov zacetka kopice.
+				 */
+				Heap(final int base) {
+					this.base = base;
+				}
+
+				/**
+				 * Vrne razred velikosti bloka.
+				 * 
+				 * @param size Velikost bloka.
+				 * @return Razred velikosti.
+				 */
+				private static int sizeClass(final int size) {
+					return Math.min(NUM_CLASSES - 1, 31 - Integer.numberOfLeadingZeros(size / MIN_BLOCK_SIZE));
+				}
+
+				/**
+				 * Vrne glavo bloka.
+				 * 
+				 * @param block Naslov bloka.
+				 * @return Velikost bloka, v najnizjih bitih pa oznaki {@link #USED} in
+				 *         {@link #PREV_FREE}.
+				 */
+				private int header(final int block) {
+					return (int) WORD.get(memory, block);
+				}
+
+				/**
+				 * Vrne velikost bloka.
+				 * 
+				 * @param block Naslov bloka.
+				 * @return Velikost bloka.
+				 */
+				private int size(final int block) {
+					return header(block) & ~(USED | PREV_FREE);
+				}
+
+				/**
+				 * Oznaci blok kot zaseden in mu zapise glavo (blok pred zasedenim ali
+				 * prostim blokom nikoli ni prost, saj se prosti bloki zdruzijo).
+				 * 
+				 * @param block Naslov bloka.
+				 * @param size  Velikost bloka.
+				 */
+				private void setUsed(final int block, final int size) {
+					WORD.set(memory, block, size | USED);
+					setPrevFree(block + size, false);
+				}
+
+				/**
+				 * Nastavi oznako {@link #PREV_FREE} v glavi bloka (ce blok obstaja).
+				 * 
+				 * @param block    Naslov bloka.
+				 * @param prevFree Ali je blok pred njim prost.
+				 */
+				private void setPrevFree(final int block, final boolean prevFree) {
+					if (block < HP)
+						WORD.set(memory, block, (header(block) & ~PREV_FREE) | (prevFree ? PREV_FREE : 0));
+				}
+
+				/**
+				 * Vrne velikost prostega bloka, ki se konca na danem naslovu.
+				 * 
+				 * @param end Naslov konca bloka.
+				 * @return Velikost bloka.
+				 */
+				private int prevSize(final int end) {
+					final int footer = (int) WORD.get(memory, end - TAG_SIZE);
+					return footer < 0 ? -footer : MIN_BLOCK_SIZE;
+				}
+
+				/**
+				 * Vrne naslednika prostega bloka v seznamu prostih blokov.
+				 * 
+				 * @param block Naslov bloka.
+				 * @return Naslov naslednika ali {@code 0}.
+				 */
+				private int next(final int block) {
+					return (int) WORD.get(memory, block + TAG_SIZE);
+				}
+
+				/**
+				 * Vrne predhodnika prostega bloka v seznamu prostih blokov.
+				 * 
+				 * @param block Naslov bloka.
+				 * @return Naslov predhodnika ali {@code 0}.
+				 */
+				private int prev(final int block) {
+					return (int) WORD.get(memory, block + 2 * TAG_SIZE);
+				}
+
+				/**
+				 * Nastavi naslednika prostega bloka v seznamu prostih blokov.
+				 * 
+				 * @param block Naslov bloka.
+				 * @param next  Naslov naslednika ali {@code 0}.
+				 */
+				private void setNext(final int block, final int next) {
+					WORD.set(memory, block + TAG_SIZE, next);
+				}
+
+				/**
+				 * Nastavi predhodnika prostega bloka v seznamu prostih blokov.
+				 * 
+				 * @param block Naslov bloka.
+				 * @param prev  Naslov predhodnika ali {@code 0}.
+				 */
+				private void setPrev(final int block, final int prev) {
+					WORD.set(memory, block + 2 * TAG_SIZE, prev);
+				}
 
+				/**
+				 * Doda prost blok v seznam prostih blokov.
+				 * 
+				 * @param block Naslov bloka.
+				 * @param size  Velikost bloka.
+				 */
+				private void insertFree(final int block, final int size) {
+					WORD.set(memory, block, size);
+					if (size > MIN_BLOCK_SIZE)
+						WORD.set(memory, block + size - TAG_SIZE, -size);
+					setPrevFree(block + size, true);
+					final int sizeClass = sizeClass(size);
+					final int head = freeLists[sizeClass];
+					setNext(block, head);
+					setPrev(block, 0);
+					if (head != 0)
+						setPrev(head, block);
+					freeLists[sizeClass] = block;
+				}
+
+				/**
+				 * Odstrani prost blok iz seznama prostih blokov.
+				 * 
+				 * @param block Naslov bloka.
+				 * @param size  Velikost bloka.
+				 */
+				private void removeFree(final int block, final int size) {
+					final int next = next(block);
+					final int prev = prev(block);
+					if (prev == 0)
+						freeLists[sizeClass(size)] = next;
+					else
+						setNext(prev, next);
+					if (next != 0)
+						setPrev(next, prev);
+				}
+
+				/**
+				 * Poisce prvi dovolj velik prost blok v najmanjsem primernem razredu
+				 * velikosti.
+				 * 
+				 * @param blockSize Najmanjsa velikost bloka.
+				 * @return Naslov prostega bloka ali {@code 0}, ce ga ni.
+				 */
+				private int findFree(final int blockSize) {
+					for (int sizeClass = sizeClass(blockSize); sizeClass < NUM_CLASSES; sizeClass++) {
+						for (int free = freeLists[sizeClass]; free != 0; free = next(free))
+							if (size(free) >= blockSize)
+								return free;
+					}
+					return 0;
+				}
+
+				/**
+				 * Rezervira in pocisti prostor na kopici.
+				 * 
+				 * @param size Stevilo zahtevanih bajtov.
+				 * @return Naslov rezerviranega prostora.
+				 */
+				int alloc(final int size) {
+					if (size < 0 || size > STACK_TOP)
+						throw new Report.Error("Illegal heap allocation (new(" + size + ")).");
+					final int blockSize = Math.max(MIN_BLOCK_SIZE, ((size + 3) & ~3) + TAG_SIZE);
+
+					int block = findFree(blockSize);
+					if (block == 0 && blockSize > SP - HP - STACK_RESERVE && collectGarbage) {
+						collect();
+						block = findFree(blockSize);
+					}
+
+					if (block != 0) {
+						final int freeSize = size(block);
+						removeFree(block, freeSize);
+						if (freeSize - blockSize >= MIN_BLOCK_SIZE) {
+							setUsed(block, blockSize);
+							insertFree(block + blockSize, freeSize - blockSize);
+						} else
+							setUsed(block, freeSize);
+					} else {
+						// kopica se poveca:
+						if (blockSize > SP - HP)
+							throw new Report.Error("Out of heap memory (new(" + size + ")).");
+						block = HP;
+						HP += blockSize;
+						peakSize = Math.max(peakSize, HP - base);
+						setUsed(block, blockSize);
+					}
+
+					final int blockEnd = block + size(block);
+					Arrays.fill(memory, block + TAG_SIZE, blockEnd, (byte) 0);
+					numAllocs++;
+					allocatedBytes += size;
+					usedBytes += blockEnd - block;
+					return block + TAG_SIZE;
+				}
+
+				/**
+				 * Sprosti prostor na kopici.
+				 * 
+				 * @param addr Naslov prostora, ki ga je vrnil {@link #alloc(int)}, ali
+				 *             {@code 0}.
+				 */
+				void free(final int addr) {
+					if (addr == 0)
+						return;
+					int block = addr - TAG_SIZE;
+					if (block < base || block > HP - MIN_BLOCK_SIZE)
+						throw new Report.Error("Illegal heap deallocation (del(" + addr + ")).");
+					final int size = size(block);
+					if ((header(block) & USED) == 0 || size < MIN_BLOCK_SIZE || size > HP - block
+							|| (block + size < HP && (header(block + size) & PREV_FREE) != 0))
+						throw new Report.Error("Illegal heap deallocation (del(" + addr + ")).");
+					numFrees++;
+					release(block, size);
+				}
+
+				/**
+				 * Sprosti zaseden blok in ga zdruzi s sosednjima prostima blokoma.
+				 * 
+				 * @param block Naslov bloka.
+				 * @param size  Velikost bloka.
+				 */
+				private void release(int block, int size) {
+					usedBytes -= size;
+
+					// zdruzi s prostim naslednikom:
+					if (block + size < HP && (header(block + size) & USED) == 0) {
+						final int nextSize = size(block + size);
+						removeFree(block + size, nextSize);
+						size += nextSize;
+					}
+					// zdruzi s prostim predhodnikom:
+					if ((header(block) & PREV_FREE) != 0) {
+						final int prevSize = prevSize(block);
+						removeFree(block - prevSize, prevSize);
+						block -= prevSize;
+						size += prevSize;
+					}
+
+					if (block + size == HP)
+						HP = block;
+					else
+						insertFree(block, size);
+				}
+
+				/**
+				 * Zbere smeti: oznaci vse bloke, dosegljive s sklada, iz staticnih
+				 * spremenljivk ali iz ze oznacenih blokov, in sprosti neoznacene.
+				 */
+				private void collect() {
+					final long begTime = System.nanoTime();
+
+					numBlocks = 0;
+					for (int block = base; block < HP; block += size(block)) {
+						if ((header(block) & USED) == 0)
+							continue;
+						if (numBlocks == blocks.length)
+							blocks = Arrays.copyOf(blocks, 2 * numBlocks);
+						blocks[numBlocks++] = block;
+					}
+					if (marked.length < numBlocks) {
+						marked = new boolean[blocks.length];
+						worklist = new int[blocks.length];
+					} else
+						Arrays.fill(marked, 0, numBlocks, false);
+					worklistLen = 0;
+
+					// oznacevanje:
+					scan(codeSegmentSize, base);
+					scan(SP, memory.length);
+					for (int p = 0; p < numPending; p++)
+						mark(pending[p]);
+					while (worklistLen > 0) {
+						final int block = blocks[worklist[--worklistLen]];
+						scan(block + TAG_SIZE, block + size(block));
+					}
+
+					// pometanje:
+					for (int b = numBlocks - 1; b >= 0; b--)
+						if (!marked[b]) {
+							final int size = size(blocks[b]);
+							reclaimedBytes += size;
+							release(blocks[b], size);
+						}
+
+					final long pause = System.nanoTime() - begTime;
+					numCollections++;
+					totalPause += pause;
+					maxPause = Math.max(maxPause, pause);
+				}
+
+				/**
+				 * Oznaci vse bloke, v katerih vsebino kaze katera od besed v danem obmocju
+				 * pomnilnika.
+				 * 
+				 * @param begAddr Zacetni naslov obmocja.
+				 * @param endAddr Koncni naslov obmocja (ni vkljucen).
+				 */
+				private void scan(final int begAddr, final int endAddr) {
+					for (int addr = begAddr; addr + 4 <= endAddr; addr += 4)
+						mark((int) WORD.get(memory, addr));
+				}
+
+				/**
+				 * Oznaci blok, v katerega vsebino kaze vrednost.
+				 * 
+				 * @param value Vrednost (morebitni kazalec).
+				 */
+				private void mark(final int value) {
+					if (value < base + TAG_SIZE || value >= HP)
+						return;
+					// zadnji blok, ki se zacne pred vrednostjo:
+					int lo = 0;
+					int hi = numBlocks - 1;
+					while (lo < hi) {
+						final int mid = (lo + hi + 1) >>> 1;
+						if (blocks[mid] < value)
+							lo = mid;
+						else
+							hi = mid - 1;
+					}
+					if (numBlocks == 0 || value < blocks[lo] + TAG_SIZE || marked[lo])
+						return;
+					if (value >= blocks[lo] + size(blocks[lo]))
+						return;
+					marked[lo] = true;
+					worklist[worklistLen++] = lo;
+				}
+
+				/**
+				 * Izpise statistiko uporabe kopice.
+				 */
+				void printStats() {
+					int freeBytes = 0;
+					int largestFree = 0;
+					for (int sizeClass = 0; sizeClass < NUM_CLASSES; sizeClass++)
+						for (int free = freeLists[sizeClass]; free != 0; free = next(free)) {
+							freeBytes += size(free);
+							largestFree = Math.max(largestFree, size(free));
+						}
+					output.printf("HEAP: %d allocations (%d bytes), %d deallocations, %d bytes in use, ", numAllocs,
+							allocatedBytes, numFrees, usedBytes);
+					output.printf("peak size %d bytes, current size %d bytes, %d bytes free", peakSize, HP - base,
+							freeBytes);
+					output.printf(" (fragmentation %.1f%%)\n",
+							freeBytes == 0 ? 0.0 : 100.0 * (freeBytes - largestFree) / freeBytes);
+					if (collectGarbage)
+						output.printf("GC: %d collections, %d bytes reclaimed, pauses %.3f ms total, %.3f ms max\n",
+								numCollections, reclaimedBytes, totalPause / 1e6, maxPause / 1e6);
+				}
+
+			}
+
+			// --- VHOD IN IZHOD ---
+
+			/**
+			 * Zapise vsebino medpomnilnika izhoda na izhod programa.
+			 */
+			private void flushOutput() {
+				if (outBufferLen > 0) {
+					output.write(outBuffer, 0, outBufferLen);
+					outBufferLen = 0;
+				}
+			}
+
+			/**
+			 * Izpise znak.
+			 * 
+			 * @param c Znak.
+			 */
+			private void putChar(final int c) {
+				if (c < 0 || c >= 0x80) {
+					flushOutput();
+					output.printf("%c", c);
+					return;
+				}
+				if (outBufferLen == outBuffer.length)
+					flushOutput();
+				outBuffer[outBufferLen++] = (byte) c;
+			}
+
+			/**
+			 * Izpise celo stevilo v desetiskem zapisu.
+			 * 
+			 * @param value Celo stevilo.
+			 */
+			private void putInt(int value) {
+				if (outBufferLen + 11 > outBuffer.length)
+					flushOutput();
+				if (value < 0)
+					outBuffer[outBufferLen++] = '-';
+				else
+					value = -value; // stevke se racunajo iz negativne vrednosti (zaradi MIN_VALUE)
+				final int begPos = outBufferLen;
+				do {
+					outBuffer[outBufferLen++] = (byte) ('0' - value % 10);
+					value /= 10;
+				} while (value != 0);
+				for (int l = begPos, r = outBufferLen - 1; l < r; l++, r--) {
+					final byte digit = outBuffer[l];
+					outBuffer[l] = outBuffer[r];
+					outBuffer[r] = digit;
+				}
+			}
+
+			/**
+			 * Prebere naslednji znak vhoda.
+			 * 
+			 * @return Znak ali {@code -1} na koncu vhoda.
+			 */
+			private int getChar() {
+				if (inBufferPos == inBufferLen) {
+					try {
+						inBufferLen = input.read(inBuffer);
+					} catch (IOException __) {
+						throw new Report.Error("Cannot read program input.");
+					}
+					inBufferPos = 0;
+					if (inBufferLen <= 0) {
+						inBufferLen = 0;
+						return -1;
+					}
+				}
+				return inBuffer[inBufferPos++] & 0xFF;
+			}
+
+			/**
+			 * Prebere celo stevilo (tako kot {@link Scanner#nextInt()}: locilo za
+			 * stevilom ostane neprebrano).
+			 * 
+			 * @return Celo stevilo.
+			 */
+			private int getInt() {
+				int c = getChar();
+				while (c != -1 && Character.isWhitespace(c))
+					c = getChar();
+				if (c == -1)
+					throw new Report.Error("getint: No integer in the input.");
+				final boolean negative = c == '-';
+				if (c == '-' || c == '+')
+					c = getChar();
+				long value = 0;
+				int numDigits = 0;
+				while (c >= '0' && c <= '9' && value <= 0x80000000L) {
+					value = value * 10 + (c - '0');
+					numDigits++;
+					c = getChar();
+				}
+				if (numDigits == 0 || (c != -1 && !Character.isWhitespace(c))
+						|| value > (negative ? 0x80000000L : 0x7FFFFFFFL))
+					throw new Report.Error("getint: Illegal integer in the input.");
+				if (c != -1)
+					inBufferPos--;
+				return (int) (negative ? -value : value);
+			}
+
+			/**
+			 * Prebere preostanek vrstice vhoda (tako kot {@link Scanner#nextLine()}) in
+			 * ga shrani kot niz v pomnilnik.
+			 * 
+			 * @param strAddr Naslov niza.
+			 */
+			private void getLine(int strAddr) {
+				int c = getChar();
+				if (c == -1)
+					throw new Report.Error("getstr: No line in the input.");
+				int lineLen = 0;
+				boolean ascii = true;
+				while (c != -1 && c != '\n' && c != '\r') {
+					if (lineLen == lineBuffer.length)
+						lineBuffer = Arrays.copyOf(lineBuffer, 2 * lineLen);
+					lineBuffer[lineLen++] = (byte) c;
+					ascii &= c < 0x80;
+					c = getChar();
+				}
+				if (c == '\r' && getChar() != '\n' && inBufferLen > 0)
+					inBufferPos--;
+				if (ascii) {
+					for (int l = 0; l < lineLen; l++) {
+						memSAVE(strAddr, lineBuffer[l], null);
+						strAddr += 4;
+					}
+				} else {
+					final String strValue = new String(lineBuffer, 0, lineLen, java.nio.charset.StandardCharsets.UTF_8);
+					for (int l = 0; l < strValue.length(); l++) {
+						memSAVE(strAddr, strValue.charAt(l), null);
+						strAddr += 4;
+					}
+				}
+				memSAVE(strAddr, 0, null);
+			}
+
+			// --- PREVEDENA KODA ---
+
+			@Override
+			int heapTop() {
+				return HP;
+			}
+
+			@Override
+			int growStack(final int sp, final int newSP, final int numPending) {
+				SP = sp;
+				this.numPending = numPending;
+				try {
+					if (newSP < HP)
+						growStack(newSP);
+				} finally {
+					this.numPending = 0;
+				}
+				return HP;
+			}
+
+			@Override
+			int exec(final int sp, final int fp, final int pc) {
+				SP = sp;
+				FP = fp;
+				PC = pc;
+				if (!step())
+					throw Bytecode.EXIT;
+				while (PC != pc + 1 || FP != fp) {
+					if (budget-- == 0) {
+						budget = 0;
+						throw budgetExceeded();
+					}
+					if (!step())
+						throw Bytecode.EXIT;
+				}
+				return SP;
+			}
+
+			@Override
+			int tailCall(final int sp, final int fp, final int pc) {
+				final int retPC = memLOAD(fp - 8);
+				final int retFP = memLOAD(fp - 4);
+				SP = sp;
+				FP = fp;
+				PC = pc;
+				if (!step())
+					throw Bytecode.EXIT;
+				while (PC != retPC || FP != retFP) {
+					if (budget-- == 0) {
+						budget = 0;
+						throw budgetExceeded();
+					}
+					if (!step())
+						throw Bytecode.EXIT;
+				}
+				return SP;
+			}
+
+			@Override
+			Report.Error budgetExceeded(final int pc) {
+				PC = pc;
+				budget = 0;
+				return budgetExceeded();
+			}
+
+			// --- IZVAJANJE ---
+
+			/**
+			 * Zapise {@code num} ponovitev zaporedja {@code len} besed v pomnilnik (brez
+			 * testnega izpisa). Zaporedje samih nicel se zapise z enim polnjenjem,
+			 * sicer pa se zaporedje zapise enkrat in nato kopira v vedno daljsih kosih.
+			 * 
+			 * @param dstAddr  Naslov, kamor se zaporedje zapise.
+			 * @param num      Stevilo ponovitev zaporedja.
+			 * @param initAddr Naslov zaporedja.
+			 * @param len      Dolzina zaporedja v besedah.
+			 * @return Naslov za zadnjo zapisano besedo.
+			 */
+			private int init(final int dstAddr, final int num, final int initAddr, final int len) {
+				final long size = 4L * num * len;
+				if (num < 0 || len < 0 || initAddr < codeSegmentSize || initAddr + 4L * len > memory.length
+						|| dstAddr < codeSegmentSize || dstAddr + size > memory.length)
+					throw new Report.InternalError();
+				if (size == 0)
+					return dstAddr;
+				final int endAddr = dstAddr + (int) size;
+				boolean zero = true;
+				for (int l = 0; l < len && zero; l++)
+					zero = (int) WORD.get(memory, initAddr + 4 * l) == 0;
+				if (zero)
+					Arrays.fill(memory, dstAddr, endAddr, (byte) 0);
+				else {
+					System.arraycopy(memory, initAddr, memory, dstAddr, 4 * len);
+					for (int copied = 4 * len; dstAddr + copied < endAddr; copied *= 2)
+						System.arraycopy(memory, dstAddr, memory, dstAddr + copied,
+								Math.min(copied, endAddr - dstAddr - copied));
+				}
+				return endAddr;
+			}
+
+			/**
+			 * Sprozi napako ob prekoracitvi najvecjega stevila ukazov.
+			 * 
+			 * @return Napaka.
+			 */
+			private Report.Error budgetExceeded() {
+				return new Report.Error("Instruction budget exceeded (PC=" + PC + ").");
+			}
+
+			/**
+			 * Izvaja program ukaz za ukazom.
+			 */
+			private void execute() {
+				while (true) {
+					if (budget-- == 0) {
+						budget = 0;
+						throw budgetExceeded();
+					}
+					if (!step())
+						return;
+				}
+			}
+
+			/**
+			 * Izvede en ukaz programa.
+			 * 
+			 * @return Ali se izvajanje programa nadaljuje.
+			 */
+			private boolean step() {
 				if (debugStack) {
-					for (int stackAddr = 0x10000 - 4; stackAddr >= SP; stackAddr -= 4) {
+					flushOutput();
+					for (int stackAddr = STACK_TOP - 4; stackAddr >= SP; stackAddr -= 4) {
 						final String debugLoc = debugLocs.get(stackAddr);
-						System.out.printf("%15s ", debugLoc == null ? "" : debugLoc);
+						output.printf("%15s ", debugLoc == null ? "" : debugLoc);
 						if (stackAddr == FP)
-							System.out.printf("FP => ");
+							output.printf("FP => ");
 						else if (stackAddr == SP)
-							System.out.printf("SP => ");
+							output.printf("SP => ");
 						else
-							System.out.printf("      ");
-						System.out.printf("%6d: %12d", stackAddr, memLOAD(stackAddr));
+							output.printf("      ");
+						output.printf("%6d: %12d", stackAddr, memLOAD(stackAddr));
 						final String debugDsc = debugDscs.get(stackAddr);
-						System.out.printf(" %s", debugDsc == null ? "" : debugDsc);
-						System.out.printf("\n");
+						output.printf(" %s", debugDsc == null ? "" : debugDsc);
+						output.printf("\n");
 					}
-					System.out.printf("\n");
+					output.printf("\n");
 				}
 
-				final PDM.CodeInstr instr = program.get(PC);
+				if (PC < 0 || PC >= codeSegmentSize)
+					throw new Report.InternalError();
+				final PDM.INSTR instr = instrs[PC];
 				if (debugStack) {
-					System.out.printf("\033[1m%15s %5d: %s\033[0m\n\n",
-							((PDM.INSTR) instr).debugLocation == null ? "" : ((PDM.INSTR) instr).debugLocation, PC,
-							instr.toString());
+					output.printf("\033[1m%15s %5d: %s\033[0m\n\n",
+							instr == null || instr.debugLocation == null ? "" : instr.debugLocation.location(), PC, instr);
 				}
 
-				switch (instr) {
-				case PDM.INIT i: {
+				switch (opcodes[PC]) {
+				case OP_INIT: {
 					int initAddr = pop();
 					int dstAddr = pop();
 					final int numInits = memLOAD(initAddr);
@@ -273,170 +1528,180 @@ public class Machine {
 						initAddr += 4;
 						int len = memLOAD(initAddr);
 						initAddr += 4;
-						for (int n = 0; n < num; n++) {
-							for (int l = 0; l < len; l++) {
-								memSAVE(dstAddr, memLOAD(initAddr + 4 * l), i);
-								dstAddr += 4;
+						if (debugStack) {
+							for (int n = 0; n < num; n++) {
+								for (int l = 0; l < len; l++) {
+									memSAVE(dstAddr, memLOAD(initAddr + 4 * l), instr);
+									dstAddr += 4;
+								}
 							}
-						}
+						} else
+							dstAddr = init(dstAddr, num, initAddr, len);
 						initAddr += 4 * len;
 					}
-					PC += i.size();
+					PC += 1;
 					break;
 				}
-				case PDM.LOAD i: {
+				case OP_LOAD: {
 					int addr = pop();
 					int value = memLOAD(addr);
-					push(value, i);
-					PC += i.size();
+					push(value, instr);
+					PC += 1;
 					break;
 				}
-				case PDM.SAVE i: {
+				case OP_SAVE: {
 					final int addr = pop();
 					final int value = pop();
-					memSAVE(addr, value, i);
-					PC += i.size();
+					memSAVE(addr, value, instr);
+					PC += 1;
 					break;
 				}
-				case PDM.POPN i: {
+				case OP_POPN: {
 					int n = pop();
-					if (n < 0) {
-						while (n < 0) {
-							push(0, i);
-							n += 4;
-						}
-					} else {
-						while (n > 0) {
-							pop();
-							n -= 4;
+					if (debugStack) {
+						if (n < 0) {
+							while (n < 0) {
+								push(0, instr);
+								n += 4;
+							}
+						} else {
+							while (n > 0) {
+								pop();
+								n -= 4;
+							}
 						}
-					}
-					PC += i.size();
+					} else
+						popn(n);
+					PC += 1;
 					break;
 				}
-				case PDM.PUSH i: {
-					push(i.intc, i);
-					PC += i.size();
+				case OP_PUSH: {
+					push(operands[PC], instr);
+					PC += 5;
 					break;
 				}
-				case PDM.NAME i: {
-					push(labelToAddr.get(i.name), i);
-					PC += i.size();
+				case OP_LOADFP: {
+					push(memLOAD(FP + operands[PC]), instr);
+					PC += 5;
 					break;
 				}
-				case PDM.REGN i: {
-					final int value = switch (i.regn) {
-					case PC -> PC;
-					case FP -> FP;
-					case SP -> SP;
-					default -> throw new Report.InternalError();
-					};
-					push(value, i);
-					PC += i.size();
+				case OP_SAVEFP: {
+					memSAVE(FP + operands[PC], pop(), instr);
+					PC += 5;
 					break;
 				}
-				case PDM.OPER i: {
-					switch (i.oper) {
-					case NOT:
-					case NEG: {
-						final int expr = pop();
-						final int result = switch (i.oper) {
-						case NOT -> (expr == 0) ? 1 : 0;
-						case NEG -> -expr;
-						default -> throw new Report.InternalError();
-						};
-						push(result, i);
-						break;
-					}
-					case OR:
-					case AND:
-					case EQU:
-					case NEQ:
-					case GTH:
-					case LTH:
-					case GEQ:
-					case LEQ:
-					case ADD:
-					case SUB:
-					case MUL:
-					case DIV:
-					case MOD: {
-						final int snd = pop();
-						final int fst = pop();
-						int result = switch (i.oper) {
-						case OR -> (fst != 0) || (snd != 0) ? 1 : 0;
-						case AND -> (fst != 0) && (snd != 0) ? 1 : 0;
-						case EQU -> fst == snd ? 1 : 0;
-						case NEQ -> fst != snd ? 1 : 0;
-						case GTH -> fst > snd ? 1 : 0;
-						case LTH -> fst < snd ? 1 : 0;
-						case GEQ -> fst >= snd ? 1 : 0;
-						case LEQ -> fst <= snd ? 1 : 0;
-						case ADD -> fst + snd;
-						case SUB -> fst - snd;
-						case MUL -> fst * snd;
-						case DIV -> fst / snd;
-						case MOD -> fst % snd;
-						default -> throw new Report.InternalError();
-						};
-						push(result, i);
-						break;
-					}
-					default:
-						throw new Report.InternalError();
-					}
-					PC += i.size();
+				case OP_LOADSL: {
+					push(memLOAD(frame(operands[PC + 1]) + operands[PC]), instr);
+					PC += 9;
+					break;
+				}
+				case OP_SAVESL: {
+					memSAVE(frame(operands[PC + 1]) + operands[PC], pop(), instr);
+					PC += 9;
+					break;
+				}
+				case OP_REGN_PC: {
+					push(PC, instr);
+					PC += 1;
+					break;
+				}
+				case OP_REGN_FP: {
+					push(FP, instr);
+					PC += 1;
+					break;
+				}
+				case OP_REGN_SP: {
+					push(SP, instr);
+					PC += 1;
+					break;
+				}
+				case OP_NOT: {
+					push(pop() == 0 ? 1 : 0, instr);
+					PC += 1;
+					break;
+				}
+				case OP_NEG: {
+					push(-pop(), instr);
+					PC += 1;
+					break;
+				}
+				case OP_OR:
+				case OP_AND:
+				case OP_EQU:
+				case OP_NEQ:
+				case OP_GTH:
+				case OP_LTH:
+				case OP_GEQ:
+				case OP_LEQ:
+				case OP_ADD:
+				case OP_SUB:
+				case OP_MUL:
+				case OP_DIV:
+				case OP_MOD: {
+					final int snd = pop();
+					final int fst = pop();
+					push(oper(opcodes[PC], fst, snd), instr);
+					PC += 1;
 					break;
 				}
-				case PDM.UJMP i: {
+				case OP_UJMP: {
+					final int oldPC = PC;
 					PC = pop();
+					if (useCompiled && tiered && PC < oldPC && ++loopCounts[PC] >= LOOP_THRESHOLD) {
+						try {
+							hotLoop();
+						} catch (Bytecode.Exit __) {
+							return false;
+						}
+					}
 					break;
 				}
-				case PDM.CJMP i: {
+				case OP_CJMP: {
 					final int elsePC = pop();
 					final int thenPC = pop();
 					final int cond = pop();
 					PC = (cond != 0) ? thenPC : elsePC;
 					break;
 				}
-				case PDM.CALL i: {
+				case OP_CALL: {
+					final PDM.CALL i = (PDM.CALL) instr;
 					final int newPC = pop();
 					if (newPC < 0) {
 						switch (newPC) {
 						case -1: { // exit(exitcode)
 							pop(); // SL
-							final int exitCode = pop();
+							exitCode = pop();
 							pop();
 							pop();
-							System.out.printf("EXIT CODE (SP=%d): %d\n", SP, exitCode);
-							break loop;
+							flushOutput();
+							output.printf("EXIT CODE (SP=%d): %d\n", SP, exitCode);
+							if (heapStats)
+								heap.printStats();
+							return false;
 						}
 						case -2: { // getint()
 							pop(); // SL
-							final int intValue = scanner.nextInt();
+							flushOutput();
+							final int intValue = getInt();
 							push(intValue, null); // result
-							PC += i.size();
+							PC += 1;
 							break;
 						}
 						case -3: { // putint(intvalue)
 							pop(); // SL
 							final int intValue = pop();
-							System.out.printf("%d", intValue);
+							putInt(intValue);
 							push(1, null); // result
-							PC += i.size();
+							PC += 1;
 							break;
 						}
 						case -4: { // getstr(straddr)
 							pop(); // SL
-							int strAddr = pop();
-							final String strValue = scanner.nextLine();
-							for (int c = 0; c < strValue.length(); c++) {
-								memSAVE(strAddr, strValue.charAt(c), null);
-								strAddr += 4;
-							}
-							memSAVE(strAddr, 0, null);
+							final int strAddr = pop();
+							flushOutput();
+							getLine(strAddr);
 							push(1, null); // result
-							PC += i.size();
+							PC += 1;
 							break;
 						}
 						case -5: { // putstr(straddr)
@@ -446,66 +1711,80 @@ public class Machine {
 								int c = memLOAD(strAddr);
 								if (c == 0)
 									break;
-								System.out.printf("%c", c);
+								putChar(c);
 								strAddr += 4;
 							}
 							push(1, null); // result
-							PC += i.size();
+							PC += 1;
 							break;
 						}
 						case -6: { // new(size)
 							pop(); // SL
 							final int size = pop();
-							final int addr = HP;
-							for (int a = addr; a < addr + size; a++)
-								memory.put(a, (byte) 0);
-							HP += size;
-							push(addr, null); // result
-							PC += i.size();
+							push(heap.alloc(size), null); // result
+							PC += 1;
 							break;
 						}
 						case -7: { // del(addr)
 							pop(); // SL
-							pop(); // addr
+							heap.free(pop());
 							push(1, null); // result
-							PC += i.size();
+							PC += 1;
 							break;
 						}
 						default:
 							throw new Report.InternalError();
 						}
 					} else {
-						if (debugStack) {
-							debugDscs.put(SP, "... SL");
-							debugDscs.put(SP - 4,
-									"... FP *** " + (i.debugFrame == null ? "" : i.debugFrame.name) + " ***");
-							debugDscs.put(SP - 8, "... RA ");
-							if (i.debugFrame != null) {
-								if (i.debugFrame.debugPars != null)
-									for (final Mem.RelAccess relAccess : i.debugFrame.debugPars)
-										if (relAccess.debugName != null)
-											debugDscs.put(SP + relAccess.offset, "... par: " + relAccess.debugName);
-								if (i.debugFrame.debugVars != null)
-									for (final Mem.RelAccess relAccess : i.debugFrame.debugVars)
-										if (relAccess.debugName != null) {
-											if (relAccess.size == 4)
-												debugDscs.put(SP + relAccess.offset, "... var: " + relAccess.debugName);
-											else {
-												for (int s = 0; s < relAccess.size; s += 4)
-													debugDscs.put(SP + relAccess.offset + s,
-															"... var: " + relAccess.debugName + "[" + (s / 4) + "]");
-											}
-										}
-							}
-						}
+						if (debugStack)
+							describeFrame(SP, i.debugFrame);
 						push(FP, i);
-						push(PC + i.size(), i);
+						push(PC + 1, i);
 						FP = SP + 8;
 						PC = newPC;
+						if (!enter())
+							return false;
+					}
+					break;
+				}
+				case OP_TCAL: {
+					final PDM.TCAL i = (PDM.TCAL) instr;
+					final int newPC = pop();
+					if (newPC < 0)
+						throw new Report.InternalError();
+					final int argsSize = operands[PC];
+					final int newFP = FP + operands[PC + 1] - argsSize;
+					final int retPC = memLOAD(FP - 8);
+					final int retFP = memLOAD(FP - 4);
+					if (newFP + argsSize > memory.length)
+						throw new Report.InternalError();
+					if (!debugStack)
+						System.arraycopy(memory, SP, memory, newFP, argsSize);
+					else {
+						// argumenti se premaknejo od zgoraj navzdol, saj je newFP > SP:
+						for (int offset = argsSize - 4; offset >= 0; offset -= 4) {
+							memSAVE(newFP + offset, memLOAD(SP + offset), i);
+							debugLocs.put(newFP + offset, debugLocs.get(SP + offset));
+						}
+						for (int addr = SP; addr < FP + operands[PC + 1]; addr += 4) {
+							debugDscs.put(addr, null);
+							if (addr < newFP)
+								debugLocs.put(addr, null);
+						}
 					}
+					SP = newFP;
+					if (debugStack)
+						describeFrame(SP, i.debugFrame);
+					push(retFP, i);
+					push(retPC, i);
+					FP = newFP;
+					PC = newPC;
+					if (!enter())
+						return false;
 					break;
 				}
-				case PDM.RETN i: {
+				case OP_RETN: {
+					final PDM.RETN i = (PDM.RETN) instr;
 					if (debugStack) {
 						debugDscs.put(FP, null);
 						debugDscs.put(FP - 4, null);
@@ -530,15 +1809,24 @@ public class Machine {
 					int parsSize = pop();
 					final int result = pop();
 					PC = memLOAD(FP - 8);
-					while (SP != FP) {
-						pop();
-					}
-					// SP = FP;
-					FP = memLOAD(FP - 4);
-					parsSize += 4;
-					while (parsSize > 0) {
-						pop();
-						parsSize -= 4;
+					if (SP > FP)
+						throw new Report.InternalError();
+					if (debugStack) {
+						while (SP != FP) {
+							pop();
+						}
+						// SP = FP;
+						FP = memLOAD(FP - 4);
+						parsSize += 4;
+						while (parsSize > 0) {
+							pop();
+							parsSize -= 4;
+						}
+					} else {
+						// lokalne spremenljivke in parametri se odstranijo naenkrat:
+						SP = FP;
+						FP = memLOAD(FP - 4);
+						popn(parsSize + 4);
 					}
 					push(result, i);
 					break;
@@ -546,9 +1834,284 @@ public class Machine {
 				default:
 					throw new Report.InternalError();
 				}
+				return true;
+			}
+
+			/**
+			 * Zabelezi opise staticne povezave, {@code FP}, povratnega naslova,
+			 * parametrov in spremenljivk klicnega zapisa za testni izpis dogajanja na
+			 * skladu.
+			 * 
+			 * @param fp    Naslov klicnega zapisa.
+			 * @param frame Klicni zapis ali {@code null}, ce ni znan.
+			 */
+			private void describeFrame(final int fp, final Mem.Frame frame) {
+				debugDscs.put(fp, "... SL");
+				debugDscs.put(fp - 4, "... FP *** " + (frame == null ? "" : frame.name) + " ***");
+				debugDscs.put(fp - 8, "... RA ");
+				if (frame != null) {
+					if (frame.debugPars != null)
+						for (final Mem.RelAccess relAccess : frame.debugPars)
+							if (relAccess.debugName != null)
+								debugDscs.put(fp + relAccess.offset, "... par: " + relAccess.debugName);
+					if (frame.debugVars != null)
+						for (final Mem.RelAccess relAccess : frame.debugVars)
+							if (relAccess.debugName != null) {
+								if (relAccess.size == 4)
+									debugDscs.put(fp + relAccess.offset, "... var: " + relAccess.debugName);
+								else {
+									for (int s = 0; s < relAccess.size; s += 4)
+										debugDscs.put(fp + relAccess.offset + s,
+												"... var: " + relAccess.debugName + "[" + (s / 4) + "]");
+								}
+							}
+				}
+			}
+
+			/**
+			 * Ob vstopu v podprogram na naslovu {@code PC} (klicni zapis je ze na
+			 * skladu) steje klice podprograma in ga po potrebi prevede; ce je podprogram
+			 * preveden, ga izvede v prevedeni kodi vse do vrnitve. Ce je gnezdenih
+			 * klicev prevedene kode prevec (glej {@link Bytecode#MAX_CALL_DEPTH}), se
+			 * podprogram izvede s skladovnim strojem.
+			 * 
+			 * @return Ali se izvajanje programa nadaljuje.
+			 */
+			private boolean enter() {
+				final int newPC = PC;
+				if (useCompiled && newPC < compiled.length && callDepth < Bytecode.MAX_CALL_DEPTH) {
+					if (tiered && compiled[newPC] == null && ++callCounts[newPC] == CALL_THRESHOLD)
+						promote(newPC);
+					if (compiled[newPC] != null) {
+						final int retPC = memLOAD(FP - 8);
+						final int retFP = memLOAD(FP - 4);
+						callDepth++;
+						try {
+							SP = compiled[newPC].call(newPC, newPC, this, SP, FP);
+						} catch (Bytecode.Exit __) {
+							return false;
+						}
+						callDepth--;
+						PC = retPC;
+						FP = retFP;
+					}
+				}
+				return true;
+			}
+
+			/**
+			 * Ob skoku na zacetek pogosto ponavljane zanke (na naslovu {@code PC})
+			 * prevede podprogram z zanko in izvajanje podprograma nadaljuje v prevedeni
+			 * kodi vse do vrnitve iz podprograma. Ce podprograma ni mogoce prevesti, se
+			 * izvajanje nadaljuje s skladovnim strojem, prav tako pa tudi, ce je
+			 * gnezdenih klicev prevedene kode prevec.
+			 */
+			private void hotLoop() {
+				if (callDepth >= Bytecode.MAX_CALL_DEPTH)
+					return;
+				final int funAddr = promote(PC);
+				if (funAddr < 0 || compiled[funAddr] == null) {
+					loopCounts[PC] = Integer.MIN_VALUE;
+					return;
+				}
+				final int retPC = memLOAD(FP - 8);
+				final int retFP = memLOAD(FP - 4);
+				callDepth++;
+				SP = compiled[funAddr].call(funAddr, PC, this, SP, FP);
+				callDepth--;
+				PC = retPC;
+				FP = retFP;
 			}
 
-			scanner.close();
+			/**
+			 * Izvaja program, pri cemer se vrednost na vrhu sklada hrani v lokalni
+			 * spremenljivki {@code top} in ne v pomnilniku. Pred ukazi, ki potrebujejo
+			 * dejansko vsebino sklada (klici, vrnitve, {@code INIT}, {@code POPN},
+			 * {@code REGN SP} ipd.), se vrednost zapise v pomnilnik in ukaz izvede z
+			 * {@link #step()}.
+			 */
+			private void executeCached() {
+				int pc = PC;
+				int fp = FP;
+				int sp = SP;
+				int top = 0;
+				boolean cached = false; // ali je vrednost na naslovu sp le v top
+				long budget = this.budget;
+				boolean delegated = false; // ali stevilo ukazov steje this.budget
+				try {
+					while (true) {
+						if (budget-- == 0) {
+							budget = 0;
+							PC = pc;
+							throw budgetExceeded();
+						}
+						if (pc < 0 || pc >= codeSegmentSize)
+							throw new Report.InternalError();
+						final int opcode = opcodes[pc];
+						switch (opcode) {
+						case OP_PUSH:
+						case OP_REGN_FP: {
+							if (cached)
+								memSAVE(sp, top, null);
+							if (sp - 4 < HP) {
+								SP = sp;
+								growStack(sp - 4);
+							}
+							sp -= 4;
+							if (opcode == OP_PUSH) {
+								top = operands[pc];
+								pc += 5;
+							} else {
+								top = fp;
+								pc += 1;
+							}
+							cached = true;
+							break;
+						}
+						case OP_LOADFP:
+						case OP_LOADSL: {
+							if (cached)
+								memSAVE(sp, top, null);
+							if (sp - 4 < HP) {
+								SP = sp;
+								growStack(sp - 4);
+							}
+							sp -= 4;
+							if (opcode == OP_LOADFP) {
+								top = memLOAD(fp + operands[pc]);
+								pc += 5;
+							} else {
+								int addr = fp;
+								for (int hops = operands[pc + 1]; hops > 0; hops--)
+									addr = memLOAD(addr);
+								top = memLOAD(addr + operands[pc]);
+								pc += 9;
+							}
+							cached = true;
+							break;
+						}
+						case OP_SAVEFP:
+						case OP_SAVESL: {
+							final int value = cached ? top : memLOAD(sp);
+							sp += 4;
+							cached = false;
+							if (opcode == OP_SAVEFP) {
+								memSAVE(fp + operands[pc], value, null);
+								pc += 5;
+							} else {
+								int addr = fp;
+								for (int hops = operands[pc + 1]; hops > 0; hops--)
+									addr = memLOAD(addr);
+								memSAVE(addr + operands[pc], value, null);
+								pc += 9;
+							}
+							break;
+						}
+						case OP_LOAD: {
+							top = memLOAD(cached ? top : memLOAD(sp));
+							cached = true;
+							pc += 1;
+							break;
+						}
+						case OP_SAVE: {
+							final int addr = cached ? top : memLOAD(sp);
+							memSAVE(addr, memLOAD(sp + 4), null);
+							sp += 8;
+							cached = false;
+							pc += 1;
+							break;
+						}
+						case OP_NOT: {
+							top = (cached ? top : memLOAD(sp)) == 0 ? 1 : 0;
+							cached = true;
+							pc += 1;
+							break;
+						}
+						case OP_NEG: {
+							top = -(cached ? top : memLOAD(sp));
+							cached = true;
+							pc += 1;
+							break;
+						}
+						case OP_OR:
+						case OP_AND:
+						case OP_EQU:
+						case OP_NEQ:
+						case OP_GTH:
+						case OP_LTH:
+						case OP_GEQ:
+						case OP_LEQ:
+						case OP_ADD:
+						case OP_SUB:
+						case OP_MUL:
+						case OP_DIV:
+						case OP_MOD: {
+							final int snd = cached ? top : memLOAD(sp);
+							sp += 4;
+							top = oper(opcode, memLOAD(sp), snd);
+							cached = true;
+							pc += 1;
+							break;
+						}
+						case OP_UJMP: {
+							final int oldPC = pc;
+							pc = cached ? top : memLOAD(sp);
+							sp += 4;
+							cached = false;
+							if (useCompiled && tiered && pc < oldPC && ++loopCounts[pc] >= LOOP_THRESHOLD) {
+								PC = pc;
+								FP = fp;
+								SP = sp;
+								this.budget = budget;
+								delegated = true;
+								try {
+									hotLoop();
+								} catch (Bytecode.Exit __) {
+									return;
+								}
+								delegated = false;
+								pc = PC;
+								fp = FP;
+								sp = SP;
+								budget = this.budget;
+							}
+							break;
+						}
+						case OP_CJMP: {
+							final int elsePC = cached ? top : memLOAD(sp);
+							final int thenPC = memLOAD(sp + 4);
+							final int cond = memLOAD(sp + 8);
+							sp += 12;
+							cached = false;
+							pc = (cond != 0) ? thenPC : elsePC;
+							break;
+						}
+						default: {
+							if (cached)
+								memSAVE(sp, top, null);
+							cached = false;
+							PC = pc;
+							FP = fp;
+							SP = sp;
+							this.budget = budget;
+							delegated = true;
+							if (!step())
+								return;
+							delegated = false;
+							pc = PC;
+							fp = FP;
+							sp = SP;
+							budget = this.budget;
+							break;
+						}
+						}
+					}
+				} finally {
+					// ob napaki ali koncu izvajanja se zapise stevilo izvedenih ukazov:
+					if (!delegated)
+						this.budget = budget;
+				}
+			}
 		}
 
 	}
@@ -573,14 +2136,26 @@ public class Machine {
 				// abstraktna sintaksa:
 				final Abstr.AttrAST abstrAttrAST = Abstr.constructAST(synAn);
 				// semanticna analiza:
-				final SemAn.AttrAST semanAttrAST = SemAn.analyze(abstrAttrAST);
+				SemAn.AttrAST semanAttrAST = SemAn.analyze(abstrAttrAST);
+				// optimizacija abstraktnega sintaksnega drevesa:
+				if (optimizeAST) {
+					final List<AST.Def> removedDefs = new ArrayList<AST.Def>();
+					semanAttrAST = ASTOpt.optimize(semanAttrAST, removedDefs);
+					ASTOpt.report(abstrAttrAST, removedDefs);
+				}
 				// pomnilniska predstavitev:
 				final Memory.AttrAST memoryAttrAST = Memory.organize(semanAttrAST);
 				// generiranje kode:
 				final CodeGen.AttrAST codegenAttrAST = CodeGen.generate(memoryAttrAST);
 
-				final List<PDM.CodeInstr> codeSegment = (new CodeGen.CodeSegmentGenerator(codegenAttrAST))
-						.codeSegment();
+				List<PDM.CodeInstr> codeSegment = (new CodeGen.CodeSegmentGenerator(codegenAttrAST)).codeSegment();
+				// optimizacija kode:
+				if (optimizeCode) {
+					final List<PDM.CodeInstr> optCodeSegment = CodeOpt.optimize(codeSegment);
+					Report.info("Code optimization: " + CodeOpt.numInstrs(codeSegment) + " -> "
+							+ CodeOpt.numInstrs(optCodeSegment) + " instructions.");
+					codeSegment = optCodeSegment;
+				}
 				final List<PDM.DataInstr> dataSegment = (new CodeGen.DataSegmentGenerator(codegenAttrAST))
 						.dataSegment();
 
@@ -605,7 +2180,7 @@ public class Machine {
 				}
 
 				// ustvari nov stroj in izvede program:
-				new Executor(codeSegment, dataSegment);
+				new Executor(codeSegment, dataSegment).run(System.in, System.out);
 			}
 
 			// Upajmo, da kdaj pridemo to te tocke.
@@ -0,0 +1,224 @@
+package pins24.phase;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import pins24.common.*;
+
+/**
+ * Hkratno izvajanje vec programov.
+ *
+ * Vsak program se prevede in nalozi v svoj skladovni stroj, nato pa se
+ * programi izvajajo v skupini niti omejene velikosti. Vsako izvajanje ima svoj
+ * pomnilnik, registre, vhod, izhod in najvecje stevilo ukazov, ki jih sme
+ * izvesti.
+ */
+public class Runner {
+
+	@SuppressWarnings({ "doclint:missing" })
+	public Runner() {
+		throw new Report.InternalError();
+	}
+
+	/**
+	 * Program, ki ga je treba izvesti.
+	 *
+	 * @param name    Ime programa.
+	 * @param program Skladovni stroj z nalozenim programom.
+	 * @param input   Vhod programa.
+	 */
+	public record Job(String name, Machine.Executor program, byte[] input) {
+	}
+
+	/**
+	 * Rezultat izvajanja programa.
+	 *
+	 * @param name      Ime programa.
+	 * @param exitCode  Izhodna koda programa.
+	 * @param numInstrs Stevilo izvedenih ukazov.
+	 * @param time      Cas izvajanja v nanosekundah.
+	 * @param output    Izhod programa.
+	 * @param error     Opis napake ali {@code null}, ce do napake ni prislo.
+	 */
+	public record Outcome(String name, int exitCode, long numInstrs, long time, String output, String error) {
+	}
+
+	/**
+	 * Izvede en program. Vsaka napaka med izvajanjem programa se zapise v
+	 * rezultat izvajanja programa.
+	 *
+	 * @param job       Program, ki ga je treba izvesti.
+	 * @param maxInstrs Najvecje stevilo ukazov, ki jih program sme izvesti.
+	 * @return Rezultat izvajanja programa.
+	 */
+	public static Outcome run(final Job job, final long maxInstrs) {
+		final ByteArrayOutputStream output = new ByteArrayOutputStream();
+		final long begTime = System.nanoTime();
+		try (PrintStream out = new PrintStream(output)) {
+			final Machine.Executor.Result result = job.program().run(new ByteArrayInputStream(job.input()), out,
+					maxInstrs);
+			final Throwable error = result.error();
+			return new Outcome(job.name(), result.exitCode(), result.numInstrs(), System.nanoTime() - begTime,
+					output.toString(), error == null ? null : message(error));
+		} catch (Throwable error) {
+			// napaka v enem programu (tudi npr. StackOverflowError) ne prekine izvajanja
+			// ostalih programov:
+			return new Outcome(job.name(), -1, 0, System.nanoTime() - begTime, output.toString(), message(error));
+		}
+	}
+
+	/**
+	 * Vrne opis napake.
+	 *
+	 * @param error Napaka.
+	 * @return Opis napake.
+	 */
+	private static String message(final Throwable error) {
+		return error.getMessage() == null ? error.toString() : error.getMessage();
+	}
+
+	/**
+	 * Hkrati izvede vec programov.
+	 *
+	 * @param jobs       Programi, ki jih je treba izvesti.
+	 * @param numThreads Najvecje stevilo hkrati izvajanih programov.
+	 * @param maxInstrs  Najvecje stevilo ukazov, ki jih posamezen program sme
+	 *                   izvesti.
+	 * @return Rezultati izvajanja programov (v enakem vrstnem redu kot programi).
+	 */
+	public static List<Outcome> runAll(final List<Job> jobs, final int numThreads, final long maxInstrs) {
+		final ExecutorService pool = Executors.newFixedThreadPool(numThreads);
+		try {
+			final List<Future<Outcome>> futures = new ArrayList<Future<Outcome>>();
+			for (final Job job : jobs)
+				futures.add(pool.submit(() -> run(job, maxInstrs)));
+			final List<Outcome> outcomes = new ArrayList<Outcome>();
+			for (final Future<Outcome> future : futures)
+				outcomes.add(future.get());
+			return outcomes;
+		} catch (InterruptedException __) {
+			Thread.currentThread().interrupt();
+			throw new Report.Error("Interrupted while running programs.");
+		} catch (ExecutionException exception) {
+			throw new Report.InternalError();
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	/**
+	 * Prevede program in ga nalozi v skladovni stroj.
+	 *
+	 * @param srcFileName Ime izvorne datoteke.
+	 * @return Skladovni stroj z nalozenim programom.
+	 */
+	public static Machine.Executor compile(final String srcFileName) {
+		try (SynAn synAn = new SynAn(srcFileName)) {
+			final Abstr.AttrAST abstrAttrAST = Abstr.constructAST(synAn);
+			SemAn.AttrAST semanAttrAST = SemAn.analyze(abstrAttrAST);
+			if (Machine.optimizeAST)
+				semanAttrAST = ASTOpt.optimize(semanAttrAST);
+			final Memory.AttrAST memoryAttrAST = Memory.organize(semanAttrAST);
+			final CodeGen.AttrAST codegenAttrAST = CodeGen.generate(memoryAttrAST);
+			List<PDM.CodeInstr> codeSegment = (new CodeGen.CodeSegmentGenerator(codegenAttrAST)).codeSegment();
+			if (Machine.optimizeCode)
+				codeSegment = CodeOpt.optimize(codeSegment);
+			final List<PDM.DataInstr> dataSegment = (new CodeGen.DataSegmentGenerator(codegenAttrAST))
+					.dataSegment();
+			return new Machine.Executor(codeSegment, dataSegment);
+		}
+	}
+
+	// --- ZAGON ---
+
+	/**
+	 * Zagon hkratnega izvajanja vec programov kot samostojnega programa.
+	 *
+	 * Argumenti v ukazni vrstici so imena izvornih datotek, pred njimi pa so lahko
+	 * stikala {@code -threads N} (stevilo niti, privzeto stevilo procesorjev),
+	 * {@code -budget N} (najvecje stevilo ukazov na program, privzeto
+	 * 1000000000) in {@code -repeat N} (kolikokrat se izvede vsak program, privzeto
+	 * 1). Vhod programa {@code prg.pins24} se prebere iz datoteke {@code prg.in},
+	 * ce ta obstaja.
+	 *
+	 * @param cmdLineArgs Argumenti v ukazni vrstici.
+	 */
+	public static void main(final String[] cmdLineArgs) {
+		System.out.println("This is PINS'24 compiler (concurrent runner):");
+
+		try {
+			int numThreads = Runtime.getRuntime().availableProcessors();
+			long maxInstrs = 1000000000;
+			int numRepeats = 1;
+			int arg = 0;
+			try {
+				while (arg < cmdLineArgs.length && cmdLineArgs[arg].startsWith("-")) {
+					switch (cmdLineArgs[arg]) {
+					case "-threads" -> numThreads = Integer.parseInt(cmdLineArgs[arg + 1]);
+					case "-budget" -> maxInstrs = Long.parseLong(cmdLineArgs[arg + 1]);
+					case "-repeat" -> numRepeats = Integer.parseInt(cmdLineArgs[arg + 1]);
+					default -> throw new Report.Error("Unknown option '" + cmdLineArgs[arg] + "'.");
+					}
+					arg += 2;
+				}
+			} catch (ArrayIndexOutOfBoundsException | NumberFormatException __) {
+				throw new Report.Error("Illegal command line options.");
+			}
+			if (arg == cmdLineArgs.length)
+				throw new Report.Error("No source file specified in the command line.");
+			if (numThreads < 1 || numRepeats < 1 || maxInstrs < 0)
+				throw new Report.Error("Illegal command line options.");
+
+			final List<Job> jobs = new ArrayList<Job>();
+			for (; arg < cmdLineArgs.length; arg++) {
+				final String srcFileName = cmdLineArgs[arg];
+				final Machine.Executor program = compile(srcFileName);
+				final Path inFile = Paths.get(srcFileName.replaceFirst("\\.pins24$", "") + ".in");
+				byte[] input = new byte[0];
+				if (Files.isReadable(inFile)) {
+					try {
+						input = Files.readAllBytes(inFile);
+					} catch (IOException __) {
+						throw new Report.Error("Cannot read input file '" + inFile + "'.");
+					}
+				}
+				for (int repeat = 0; repeat < numRepeats; repeat++)
+					jobs.add(new Job(srcFileName, program, input));
+			}
+
+			final long begTime = System.nanoTime();
+			final List<Outcome> outcomes = runAll(jobs, numThreads, maxInstrs);
+			final long time = System.nanoTime() - begTime;
+
+			long numInstrs = 0;
+			int numErrors = 0;
+			for (final Outcome outcome : outcomes) {
+				System.out.printf("\n\033[1m%s\033[0m (%d instructions, %.3f ms)\n", outcome.name(),
+						outcome.numInstrs(), outcome.time() / 1e6);
+				System.out.print(outcome.output());
+				if (outcome.error() != null) {
+					System.out.println(outcome.error());
+					numErrors++;
+				}
+				numInstrs += outcome.numInstrs();
+			}
+			System.out.println();
+			Report.info(String.format("%d programs (%d failed) on %d threads in %.3f s: ", outcomes.size(), numErrors,
+					numThreads, time / 1e9)
+					+ String.format("%.1f programs/s, %.1f M instructions/s.", outcomes.size() / (time / 1e9),
+							numInstrs / (time / 1e3)));
+
+			// Upajmo, da kdaj pridemo to te tocke.
+			// A zavedajmo se sledecega:
+			// 1. Prevod je zaradi napak v programu lahko napacen :-o
+			// 2. Izvorni program se zdalec ni tisto, kar je programer hotel, da bi bil ;-)
+			Report.info("Done.");
+		} catch (Report.Error error) {
+			// Izpis opisa napake.
+			System.err.println(error.getMessage());
+			System.exit(1);
+		}
+	}
+
+}
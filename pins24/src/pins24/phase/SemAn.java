@@ -162,8 +162,12 @@ public class SemAn {
 			/**
 			 * Preslikava imena v seznam definicij tega imena na razlicnih staticnih
 			 * globinah.
+			 * 
+			 * Vse pojavitve istega imena v abstraktnem sintaksnem drevesu so isti niz iz
+			 * tabele imen leksikalnega analizatorja (glej {@link LexAn}), zato se imena
+			 * primerjajo z {@code ==} in ne z {@link String#equals}.
 			 */
-			private final HashMap<String, LinkedList<ScopedDef>> namesToDefs;
+			private final IdentityHashMap<String, LinkedList<ScopedDef>> namesToDefs;
 
 			/** Seznami imen definiranih na posameznih staticnih globinah. */
 			private final LinkedList<LinkedList<String>> namesToDefsByDepth;
@@ -175,7 +179,7 @@ public class SemAn {
 			 * Ustvari novo simbolno tabelo.
 			 */
 			public SymbolTable() {
-				namesToDefs = new HashMap<String, LinkedList<ScopedDef>>();
+				namesToDefs = new IdentityHashMap<String, LinkedList<ScopedDef>>();
 				namesToDefsByDepth = new LinkedList<LinkedList<String>>();
 				depth = -1;
 				newScope();
@@ -68,39 +68,32 @@ public class SynAn implements AutoCloseable {
 	 */
 	private AST.Nodes<AST.MainDef> parseProgram() {
 		switch(lexAn.peekToken().symbol()){
-			case FUN: {
-				AST.MainDef def = parseDefinition();
-				List<AST.MainDef> maindefs = parseDefinition2();
-				List<AST.MainDef> list = new ArrayList<AST.MainDef>();
-				list.add(def);
-				if(maindefs != null) list.addAll(maindefs);
-				return new AST.Nodes<AST.MainDef>(list);
-			}
-			case VAR: {
-				AST.MainDef def = parseDefinition();
-				List<AST.MainDef> maindefs = parseDefinition2();
+			case FUN: case VAR: {
 				List<AST.MainDef> list = new ArrayList<AST.MainDef>();
-				list.add(def);
-				if(maindefs != null) list.addAll(maindefs);
+				list.add(parseDefinition());
+				parseDefinition2(list);
 				return new AST.Nodes<AST.MainDef>(list);
 			}
 			default:
 				throw new Report.Error(lexAn.peekToken(), "|program| Pricakovan fun ali var, dobil " + lexAn.peekToken().symbol());
 		}
 	}
-	private List<AST.MainDef> parseDefinition2(){
-		switch(lexAn.peekToken().symbol()){
-			case FUN: case VAR:
-				AST.MainDef def = parseDefinition();
-				List<AST.MainDef> maindefs = parseDefinition2();
-				List<AST.MainDef> list = new ArrayList<AST.MainDef>();
-				list.add(def);
-				if(maindefs != null) list.addAll(maindefs);
-				return list;
-			case EOF:
-				return null;
-			default:
-				throw new Report.Error(lexAn.peekToken(), "|definition2| Pricakovana fun, var ali konec datoteke, dobil " + lexAn.peekToken().symbol());
+	/**
+	 * Doda preostale definicije programa v seznam definicij (z zanko namesto z
+	 * rekurzijo, zato je sintaksna analiza programa z veliko definicijami
+	 * linearna in ne prekoraci sklada).
+	 */
+	private void parseDefinition2(List<AST.MainDef> list){
+		while(true){
+			switch(lexAn.peekToken().symbol()){
+				case FUN: case VAR:
+					list.add(parseDefinition());
+					break;
+				case EOF:
+					return;
+				default:
+					throw new Report.Error(lexAn.peekToken(), "|definition2| Pricakovana fun, var ali konec datoteke, dobil " + lexAn.peekToken().symbol());
+			}
 		}
 	}
 	private AST.MainDef parseDefinition(){
@@ -115,9 +108,9 @@ public class SynAn implements AutoCloseable {
 				List<AST.Stmt> stmts = parseDefinition3();
 				if(stmts == null) stmts = new ArrayList<AST.Stmt>();
 				AST.FunDef fun = new AST.FunDef(id.lexeme(), parms, stmts);
-				if(stmts.size() == 0) attrLoc.put(fun, new Report.Location(start, end));
+				if(stmts.size() == 0) attrLoc.put(fun, new Report.Span(start, end));
 				else
-					attrLoc.put(fun, new Report.Location(start, attrLoc.get(stmts.getLast())));
+					attrLoc.put(fun, new Report.Span(start, attrLoc.get(stmts.getLast())));
 				return fun;
 			}
 			case VAR: {
@@ -136,11 +129,11 @@ public class SynAn implements AutoCloseable {
 					attrLoc.put(init, new Report.Location(0,0));
 					inits.add(init);
 					AST.VarDef var = new AST.VarDef(id.lexeme(), inits);
-					attrLoc.put(var, new Report.Location(start, end));
+					attrLoc.put(var, new Report.Span(start, end));
 					return var;
 				}
 				AST.VarDef var = new AST.VarDef(id.lexeme(), inits);
-				attrLoc.put(var, new Report.Location(start, attrLoc.get(inits.getLast())));
+				attrLoc.put(var, new Report.Span(start, attrLoc.get(inits.getLast())));
 				return var;
 			}
 			default:
@@ -161,52 +154,65 @@ public class SynAn implements AutoCloseable {
 		}
 	}
 	private List<AST.ParDef> parseParameters(){
-		switch(lexAn.peekToken().symbol()){
-			case IDENTIFIER:
-				Token c = check(Token.Symbol.IDENTIFIER);
-				AST.ParDef par = new AST.ParDef(c.lexeme());
-				attrLoc.put(par, c);
-				List<AST.ParDef> pars = parseParameters2();
-				if(pars == null) pars = new ArrayList<AST.ParDef>();
-				pars.add(0, par);
-				return pars;
-			case RPAREN:
-				return null;
-			default:
-				throw new Report.Error(lexAn.peekToken(), "|parameters| Pricakovan identifier ali zaklepaj, dobil " + lexAn.peekToken().symbol() + " " + lexAn.peekToken().lexeme());
+		List<AST.ParDef> pars = null;
+		while(true){
+			switch(lexAn.peekToken().symbol()){
+				case IDENTIFIER:
+					Token c = check(Token.Symbol.IDENTIFIER);
+					AST.ParDef par = new AST.ParDef(c.lexeme());
+					attrLoc.put(par, c);
+					if(pars == null) pars = new ArrayList<AST.ParDef>();
+					pars.add(par);
+					if(!parseParameters2()) return pars;
+					break;
+				case RPAREN:
+					return pars;
+				default:
+					throw new Report.Error(lexAn.peekToken(), "|parameters| Pricakovan identifier ali zaklepaj, dobil " + lexAn.peekToken().symbol() + " " + lexAn.peekToken().lexeme());
+			}
 		}
 	}
-	private List<AST.ParDef> parseParameters2(){
+	/**
+	 * Preveri, ali parametrom sledi se en parameter.
+	 * 
+	 * @return {@code true}, ce je bila prebrana vejica.
+	 */
+	private boolean parseParameters2(){
 		switch(lexAn.peekToken().symbol()){
 			case RPAREN:
-				return null;
+				return false;
 			case COMMA:
 				check(Token.Symbol.COMMA);
-				return parseParameters();
+				return true;
 			default:
 				throw new Report.Error(lexAn.peekToken(), "|parameters2| Pricakovan zaklepaj ali vejica, dobil " + lexAn.peekToken().symbol() + " " + lexAn.peekToken().lexeme());
 		}
 	}
 	private List<AST.Stmt> parseStatements(){
-		switch(lexAn.peekToken().symbol()){
-			case IDENTIFIER: case LPAREN: case IF: case WHILE: case LET: case ADD: case SUB: case NOT: case PTR: case INTCONST: case CHARCONST: case STRINGCONST:
-				AST.Stmt stmt = parseStatement();
-				List<AST.Stmt> stmts = parseStatements2();
-				List<AST.Stmt> list = new ArrayList<AST.Stmt>();
-				list.add(stmt);
-				if(stmts != null) list.addAll(stmts);
-				return list;
-			default: 
-				throw new Report.Error(lexAn.peekToken(), "|statements| Pricakovan identifier, oklepaj, if, while, let, add, minus, negacija, kazalec ali konstanta, dobil pa " + lexAn.peekToken().symbol());
-		}
+		List<AST.Stmt> list = new ArrayList<AST.Stmt>();
+		do {
+			switch(lexAn.peekToken().symbol()){
+				case IDENTIFIER: case LPAREN: case IF: case WHILE: case LET: case ADD: case SUB: case NOT: case PTR: case INTCONST: case CHARCONST: case STRINGCONST:
+					list.add(parseStatement());
+					break;
+				default: 
+					throw new Report.Error(lexAn.peekToken(), "|statements| Pricakovan identifier, oklepaj, if, while, let, add, minus, negacija, kazalec ali konstanta, dobil pa " + lexAn.peekToken().symbol());
+			}
+		} while(parseStatements2());
+		return list;
 	}
-	private List<AST.Stmt> parseStatements2(){
+	/**
+	 * Preveri, ali stavku sledi se en stavek.
+	 * 
+	 * @return {@code true}, ce je bila prebrana vejica.
+	 */
+	private boolean parseStatements2(){
 		switch(lexAn.peekToken().symbol()){
 			case FUN: case VAR: case END: case IN: case ELSE: case EOF:
-				return null;
+				return false;
 			case COMMA:
 				check(Token.Symbol.COMMA);
-				return parseStatements();
+				return true;
 			default:
 				throw new Report.Error(lexAn.peekToken(), "|statements2| Pricakovan fun, var, end, in, else, EOF ali vejica, dobil " + lexAn.peekToken().symbol() + " " + lexAn.peekToken().lexeme());
 		}
@@ -218,7 +224,7 @@ public class SynAn implements AutoCloseable {
 				AST.Expr expr2 = parseExpression2();
 				if(expr2 != null) {
 					AST.Stmt assign = new AST.AssignStmt(expr, expr2);
-					attrLoc.put(assign, new Report.Location(attrLoc.get(expr), attrLoc.get(expr2)));
+					attrLoc.put(assign, new Report.Span(attrLoc.get(expr), attrLoc.get(expr2)));
 					return assign;
 				}
 				AST.ExprStmt stmt = new AST.ExprStmt(expr);
@@ -234,7 +240,7 @@ public class SynAn implements AutoCloseable {
 				Token end = check(Token.Symbol.END);
 				if(elseStatements == null) elseStatements = new ArrayList<AST.Stmt>();
 				AST.IfStmt stmt = new AST.IfStmt(expr, statements, elseStatements);
-				attrLoc.put(stmt, new Report.Location(start, end));
+				attrLoc.put(stmt, new Report.Span(start, end));
 				return stmt;
 			}
 			case WHILE: {
@@ -244,7 +250,7 @@ public class SynAn implements AutoCloseable {
 				List<AST.Stmt> stmts = parseStatements();
 				Token end = check(Token.Symbol.END);
 				AST.Stmt stmt = new AST.WhileStmt(expr, stmts);
-				attrLoc.put(stmt, new Report.Location(start, end));
+				attrLoc.put(stmt, new Report.Span(start, end));
 				return stmt;
 			}
 			case LET: {
@@ -254,7 +260,7 @@ public class SynAn implements AutoCloseable {
 				List<AST.Stmt> stmts = parseStatements();
 				Token end = check(Token.Symbol.END);
 				AST.Stmt stmt = new AST.LetStmt(maindefs, stmts);
-				attrLoc.put(stmt, new Report.Location(start, end));
+				attrLoc.put(stmt, new Report.Span(start, end));
 				return stmt;
 			}
 			default:
@@ -285,24 +291,29 @@ public class SynAn implements AutoCloseable {
 		}
 	}
 	private List<AST.MainDef> parseDefinicije(){
-		switch(lexAn.peekToken().symbol()){
-			case FUN: case VAR:
-				AST.MainDef def = parseDefinition();
-				List<AST.MainDef> maindefs = parseDefinicije2();
-				List<AST.MainDef> list = new ArrayList<AST.MainDef>();
-				list.add(def);
-				if(maindefs != null) list.addAll(maindefs);
-				return list;
-			default:
-				throw new Report.Error(lexAn.peekToken(), "|definicije| Pricakovan fun ali var, dobil " + lexAn.peekToken().symbol());
-		}
+		List<AST.MainDef> list = new ArrayList<AST.MainDef>();
+		do {
+			switch(lexAn.peekToken().symbol()){
+				case FUN: case VAR:
+					list.add(parseDefinition());
+					break;
+				default:
+					throw new Report.Error(lexAn.peekToken(), "|definicije| Pricakovan fun ali var, dobil " + lexAn.peekToken().symbol());
+			}
+		} while(parseDefinicije2());
+		return list;
 	}
-	private List<AST.MainDef> parseDefinicije2(){
+	/**
+	 * Preveri, ali definiciji sledi se ena definicija.
+	 * 
+	 * @return {@code true}, ce sledi definicija.
+	 */
+	private boolean parseDefinicije2(){
 		switch(lexAn.peekToken().symbol()){
 			case FUN: case VAR:
-				return parseDefinicije();
+				return true;
 			case IN:
-				return null;
+				return false;
 			default:
 				throw new Report.Error(lexAn.peekToken(), "|definicije2| Pricakovan fun, var ali in, dobil " + lexAn.peekToken().symbol());
 		}
@@ -326,7 +337,7 @@ public class SynAn implements AutoCloseable {
 				check(Token.Symbol.OR);
 				AST.Expr and2 = parseEAnd();
 				AST.BinExpr bin = new AST.BinExpr(AST.BinExpr.Oper.OR, and, and2);
-				attrLoc.put(bin, new Report.Location(attrLoc.get(and), attrLoc.get(and2)));
+				attrLoc.put(bin, new Report.Span(attrLoc.get(and), attrLoc.get(and2)));
 				AST.Expr or = parseEOR(bin);
 				if(or == null) return bin;
 				return or;
@@ -353,7 +364,7 @@ public class SynAn implements AutoCloseable {
 				check(Token.Symbol.AND);
 				AST.Expr comp = parseEComp();
 				AST.BinExpr bin = new AST.BinExpr(AST.BinExpr.Oper.AND, expr, comp);
-				attrLoc.put(bin, new Report.Location(attrLoc.get(expr), attrLoc.get(comp)));
+				attrLoc.put(bin, new Report.Span(attrLoc.get(expr), attrLoc.get(comp)));
 				AST.Expr and = parseEAnd2(bin);
 				if(and == null) return bin;
 				return and;
@@ -382,42 +393,42 @@ public class SynAn implements AutoCloseable {
 				check(Token.Symbol.EQU);
 				AST.Expr adit = parseEAdit();
 				AST.BinExpr comp = new AST.BinExpr(AST.BinExpr.Oper.EQU, expr, adit);
-				attrLoc.put(comp, new Report.Location(attrLoc.get(expr), attrLoc.get(adit)));
+				attrLoc.put(comp, new Report.Span(attrLoc.get(expr), attrLoc.get(adit)));
 				return comp;
 			}
 			case NEQ:{
 				check(Token.Symbol.NEQ);
 				AST.Expr adit = parseEAdit();
 				AST.BinExpr comp = new AST.BinExpr(AST.BinExpr.Oper.NEQ, expr, adit);
-				attrLoc.put(comp, new Report.Location(attrLoc.get(expr), attrLoc.get(adit)));
+				attrLoc.put(comp, new Report.Span(attrLoc.get(expr), attrLoc.get(adit)));
 				return comp;
 			}
 			case GTH:{
 				check(Token.Symbol.GTH);
 				AST.Expr adit = parseEAdit();
 				AST.BinExpr comp = new AST.BinExpr(AST.BinExpr.Oper.GTH, expr, adit);
-				attrLoc.put(comp, new Report.Location(attrLoc.get(expr), attrLoc.get(adit)));
+				attrLoc.put(comp, new Report.Span(attrLoc.get(expr), attrLoc.get(adit)));
 				return comp;
 			}
 			case LTH:{
 				check(Token.Symbol.LTH);
 				AST.Expr adit = parseEAdit();
 				AST.BinExpr comp = new AST.BinExpr(AST.BinExpr.Oper.LTH, expr, adit);
-				attrLoc.put(comp, new Report.Location(attrLoc.get(expr), attrLoc.get(adit)));
+				attrLoc.put(comp, new Report.Span(attrLoc.get(expr), attrLoc.get(adit)));
 				return comp;
 			}
 			case GEQ:{
 				check(Token.Symbol.GEQ);
 				AST.Expr adit = parseEAdit();
 				AST.BinExpr comp = new AST.BinExpr(AST.BinExpr.Oper.GEQ, expr, adit);
-				attrLoc.put(comp, new Report.Location(attrLoc.get(expr), attrLoc.get(adit)));
+				attrLoc.put(comp, new Report.Span(attrLoc.get(expr), attrLoc.get(adit)));
 				return comp;
 			}
 			case LEQ:{
 				check(Token.Symbol.LEQ);
 				AST.Expr adit = parseEAdit();
 				AST.BinExpr comp = new AST.BinExpr(AST.BinExpr.Oper.LEQ, expr, adit);
-				attrLoc.put(comp, new Report.Location(attrLoc.get(expr), attrLoc.get(adit)));
+				attrLoc.put(comp, new Report.Span(attrLoc.get(expr), attrLoc.get(adit)));
 				return comp;
 			}
 			default: 
@@ -443,7 +454,7 @@ public class SynAn implements AutoCloseable {
 				check(Token.Symbol.ADD);
 				AST.Expr naprej = parseEMul();
 				AST.BinExpr bin = new AST.BinExpr(AST.BinExpr.Oper.ADD, mulExpr, naprej);
-				attrLoc.put(bin, new Report.Location(attrLoc.get(mulExpr), attrLoc.get(naprej)));
+				attrLoc.put(bin, new Report.Span(attrLoc.get(mulExpr), attrLoc.get(naprej)));
 				AST.Expr isto = parseEAdit2(bin);
 				if(isto == null) return bin;
 				return isto;
@@ -452,7 +463,7 @@ public class SynAn implements AutoCloseable {
 				check(Token.Symbol.SUB);
 				AST.Expr naprej = parseEMul();
 				AST.BinExpr bin = new AST.BinExpr(AST.BinExpr.Oper.SUB, mulExpr, naprej);
-				attrLoc.put(bin, new Report.Location(attrLoc.get(mulExpr), attrLoc.get(naprej)));
+				attrLoc.put(bin, new Report.Span(attrLoc.get(mulExpr), attrLoc.get(naprej)));
 				AST.Expr isto = parseEAdit2(bin);
 				if(isto == null) return bin;
 				return isto;
@@ -480,7 +491,7 @@ public class SynAn implements AutoCloseable {
 				check(Token.Symbol.MUL);
 				AST.Expr naprej = parseEPrefix();
 				AST.BinExpr bin = new AST.BinExpr(AST.BinExpr.Oper.MUL, prefixExpr, naprej);
-				attrLoc.put(bin, new Report.Location(attrLoc.get(prefixExpr), attrLoc.get(naprej)));
+				attrLoc.put(bin, new Report.Span(attrLoc.get(prefixExpr), attrLoc.get(naprej)));
 				AST.Expr isto = parseEMul2(bin);
 				if(isto == null) return bin;
 				return isto;
@@ -489,7 +500,7 @@ public class SynAn implements AutoCloseable {
 				check(Token.Symbol.DIV);
 				AST.Expr naprej = parseEPrefix();
 				AST.BinExpr bin = new AST.BinExpr(AST.BinExpr.Oper.DIV, prefixExpr, naprej);
-				attrLoc.put(bin, new Report.Location(attrLoc.get(prefixExpr), attrLoc.get(naprej)));
+				attrLoc.put(bin, new Report.Span(attrLoc.get(prefixExpr), attrLoc.get(naprej)));
 				AST.Expr isto = parseEMul2(bin);
 				if(isto == null) return bin;
 				return isto;
@@ -498,7 +509,7 @@ public class SynAn implements AutoCloseable {
 				check(Token.Symbol.MOD);
 				AST.Expr naprej = parseEPrefix();
 				AST.BinExpr bin = new AST.BinExpr(AST.BinExpr.Oper.MOD, prefixExpr, naprej);
-				attrLoc.put(bin, new Report.Location(attrLoc.get(prefixExpr), attrLoc.get(naprej)));
+				attrLoc.put(bin, new Report.Span(attrLoc.get(prefixExpr), attrLoc.get(naprej)));
 				AST.Expr isto = parseEMul2(bin);
 				if(isto == null) return bin;
 				return isto;
@@ -516,7 +527,7 @@ public class SynAn implements AutoCloseable {
 					for(int i = prefixneOperacije.size()-1; i >= 0; i--){
 						AST.Expr tmp = zaNazaj;
 						zaNazaj = new AST.UnExpr(prefixneOperacije.get(i), zaNazaj);
-						attrLoc.put(zaNazaj, new Report.Location(prefixLoc.get(i), attrLoc.get(tmp)));
+						attrLoc.put(zaNazaj, new Report.Span(prefixLoc.get(i), attrLoc.get(tmp)));
 					}
 					prefixLoc = new ArrayList<Token>();
 				}
@@ -594,7 +605,7 @@ public class SynAn implements AutoCloseable {
 			case PTR:
 				Token c = check(Token.Symbol.PTR);
 				AST.UnExpr expr = new AST.UnExpr(AST.UnExpr.Oper.VALUEAT, value);
-				attrLoc.put(expr, new Report.Location(attrLoc.get(value), c));
+				attrLoc.put(expr, new Report.Span(attrLoc.get(value), c));
 				AST.Expr postfix = parsePostfix(expr);
 				if(postfix == null) return expr;
 				return postfix;
@@ -614,7 +625,7 @@ public class SynAn implements AutoCloseable {
 					return var;
 				}
 				AST.CallExpr call = new AST.CallExpr(c.lexeme(), args);
-				attrLoc.put(call, new Report.Location(c, arr[1]));
+				attrLoc.put(call, new Report.Span(c, arr[1]));
 				return call;
 			}
 				
@@ -622,7 +633,7 @@ public class SynAn implements AutoCloseable {
 				Token start = check(Token.Symbol.LPAREN);
 				AST.Expr expr = parseExpression();
 				Token end = check(Token.Symbol.RPAREN);
-				attrLoc.put(expr, new Report.Location(start, end));
+				attrLoc.put(expr, new Report.Span(start, end));
 				return expr;
 			}
 			case INTCONST: {
@@ -665,11 +676,9 @@ public class SynAn implements AutoCloseable {
 	private List<AST.Expr> parseArguments(){
 		switch(lexAn.peekToken().symbol()){
 			case IDENTIFIER: case LPAREN: case ADD: case SUB: case NOT: case PTR: case INTCONST: case CHARCONST: case STRINGCONST:
-				AST.Expr expr = parseExpression();
-				List<AST.Expr> args = parseArguments2(null);
 				List<AST.Expr> list = new ArrayList<AST.Expr>();
-				list.add(expr);
-				if(args != null) list.addAll(args);
+				list.add(parseExpression());
+				parseArguments2(list);
 				return list;
 			case RPAREN: 
 				return new ArrayList<AST.Expr>();
@@ -677,19 +686,18 @@ public class SynAn implements AutoCloseable {
 				throw new Report.Error(lexAn.peekToken(), "|arguments| Pricakoval identifier, (, ),  +, -, !, ^ ali konstanta, dobil " + lexAn.peekToken().symbol());
 		}
 	}
-	private List<AST.Expr> parseArguments2(List<AST.Expr> list){
-		switch(lexAn.peekToken().symbol()){
-			case RPAREN: 
-				return null;
-			case COMMA:
-				check(Token.Symbol.COMMA);
-				AST.Expr expr = parseExpression();
-				if(list == null) list = new ArrayList<AST.Expr>();
-				list.add(expr);
-				parseArguments2(list);
-				return list;
-			default: 
-				throw new Report.Error(lexAn.peekToken(), "|arguments2| Pricakoval ) ali vejico, dobil " + lexAn.peekToken().symbol());
+	private void parseArguments2(List<AST.Expr> list){
+		while(true){
+			switch(lexAn.peekToken().symbol()){
+				case RPAREN: 
+					return;
+				case COMMA:
+					check(Token.Symbol.COMMA);
+					list.add(parseExpression());
+					break;
+				default: 
+					throw new Report.Error(lexAn.peekToken(), "|arguments2| Pricakoval ) ali vejico, dobil " + lexAn.peekToken().symbol());
+			}
 		}
 	}
 	private List<AST.Init> parseInitializers(){
@@ -697,30 +705,26 @@ public class SynAn implements AutoCloseable {
 			case FUN: case VAR: case IN: case EOF:
 				return null;
 			case INTCONST: case STRINGCONST: case CHARCONST:
-				AST.Init init = parseInitializer();
-				List<AST.Init> inits = parseInitializers2();
 				List<AST.Init> list = new ArrayList<AST.Init>();
-				list.add(init);
-				if(inits != null) list.addAll(inits);
+				list.add(parseInitializer());
+				parseInitializers2(list);
 				return list;
 			default: 
 				throw new Report.Error(lexAn.peekToken(), "|initializers| Pricakoval fun, var, in, case, EOF ali konstanto, dobil " + lexAn.peekToken().symbol());
 		}
 	}
-	private List<AST.Init> parseInitializers2(){
-		switch(lexAn.peekToken().symbol()){
-			case FUN: case VAR: case IN: case EOF:
-				return new ArrayList<AST.Init>();
-			case COMMA:
-				check(Token.Symbol.COMMA);
-				AST.Init init = parseInitializer();
-				List<AST.Init> inits = parseInitializers2();
-				List<AST.Init> list = new ArrayList<AST.Init>();
-				list.add(init);
-				if(inits != null) list.addAll(inits);
-				return list;
-			default: 
-				throw new Report.Error(lexAn.peekToken(), "|initializers2| Pricakoval vejico, fun, var, in ali EOF, dobil " + lexAn.peekToken().symbol());
+	private void parseInitializers2(List<AST.Init> list){
+		while(true){
+			switch(lexAn.peekToken().symbol()){
+				case FUN: case VAR: case IN: case EOF:
+					return;
+				case COMMA:
+					check(Token.Symbol.COMMA);
+					list.add(parseInitializer());
+					break;
+				default: 
+					throw new Report.Error(lexAn.peekToken(), "|initializers2| Pricakoval vejico, fun, var, in ali EOF, dobil " + lexAn.peekToken().symbol());
+			}
 		}
 	}
 	private AST.Init parseInitializer(){
@@ -764,7 +768,7 @@ public class SynAn implements AutoCloseable {
 				check(Token.Symbol.MUL);
 				AST.AtomExpr value = parseConst();
 				AST.Init init = new AST.Init(atom, value);
-				attrLoc.put(init, new Report.Location(attrLoc.get(atom), attrLoc.get(value)));
+				attrLoc.put(init, new Report.Span(attrLoc.get(atom), attrLoc.get(value)));
 				return init;
 			default: 
 				throw new Report.Error(lexAn.peekToken(), "|initializer2| Pricakovana fun, var, vejica, in EOF ali mnozenje, dobil " + lexAn.peekToken().symbol());